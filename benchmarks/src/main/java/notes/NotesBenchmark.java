@@ -0,0 +1,143 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+import org.openjdk.jmh.annotations.*;
+
+// Load, save, search and statistics over a synthetic corpus of 1k, 100k and 1M notes.
+//
+//   cd benchmarks && mvn package
+//   java -jar target/benchmarks.jar -prof gc [-p notes=1000] [-jvmArgsAppend -Dbench.bodyChars=N]
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(java.util.concurrent.TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class NotesBenchmark {
+    private static final String[] QUERIES = {
+        "w12", "w7 w31", "w3 OR w4999", "\"w1 w2\"", "w10*", "w250 w1200", "w4000"
+    };
+
+    private int next;
+
+    @State(Scope.Benchmark)
+    public static class Corpus {
+        private static final String[] VOCABULARY = buildVocabulary(5000);
+
+        @Param({ "1000", "100000", "1000000" })
+        public int notes;
+
+        List<Note> list;
+        File directory;
+        File dataFile;
+        File saveFile;
+        NoteStore store;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            list = generate(notes, Integer.getInteger("bench.bodyChars", 400), Long.getLong("bench.seed", 42L));
+            directory = java.nio.file.Files.createTempDirectory("notes-bench").toFile();
+            dataFile = new File(directory, NoteStore.DATA_FILE);
+            saveFile = new File(directory, "save.dat");
+            NoteJournal.writeSnapshot(dataFile, list);
+            store = new NoteStore(directory, false);
+            store.open();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            store.close();
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+
+        // Unique titles; bodies of log-normal length drawn from a skewed vocabulary, so common words have long postings
+        static List<Note> generate(int count, int meanBodyChars, long seed) {
+            Random random = new Random(seed);
+            ArrayList<Note> notes = new ArrayList<Note>(count);
+            long now = System.currentTimeMillis();
+            double sigma = 0.8;
+            double mu = Math.log(meanBodyChars) - sigma * sigma / 2;
+
+            for (int i = 0; i < count; i++) {
+                int length = (int) Math.max(1, Math.exp(mu + sigma * random.nextGaussian()));
+                StringBuilder body = new StringBuilder(length + 16);
+                while (body.length() < length) {
+                    if (body.length() > 0) {
+                        body.append(random.nextInt(12) == 0 ? '\n' : ' ');
+                    }
+                    body.append(VOCABULARY[skewedIndex(random)]);
+                }
+                long created = now - (long) (random.nextDouble() * 5 * 365 * 86400000L);
+                long modified = created + (long) (random.nextDouble() * (now - created));
+                notes.add(new Note("Note " + i + " " + VOCABULARY[random.nextInt(VOCABULARY.length)],
+                                   body.toString(), created, modified));
+            }
+            return notes;
+        }
+
+        // Roughly Zipfian: low indexes are picked far more often than high ones
+        private static int skewedIndex(Random random) {
+            return (int) Math.min(VOCABULARY.length - 1, Math.floor(Math.pow(VOCABULARY.length, random.nextDouble())) - 1);
+        }
+
+        private static String[] buildVocabulary(int size) {
+            String[] words = new String[size];
+            for (int i = 0; i < size; i++) {
+                words[i] = "w" + i;
+            }
+            return words;
+        }
+    }
+
+    @Benchmark
+    public long load(Corpus corpus) throws IOException {
+        NoteFileReader reader = new NoteFileReader(corpus.dataFile);
+        long length = 0;
+        try {
+            Note note;
+            while ((note = reader.next()) != null) {
+                length += note.getContentLength();
+            }
+        } finally {
+            reader.close();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int loadMapped(Corpus corpus) throws IOException {
+        return MappedNoteFile.open(corpus.dataFile).readNotes().size();
+    }
+
+    @Benchmark
+    public long save(Corpus corpus) throws IOException {
+        NoteJournal.writeSnapshot(corpus.saveFile, corpus.list);
+        return corpus.saveFile.length();
+    }
+
+    @Benchmark
+    public int search(Corpus corpus) {
+        return corpus.store.search(QUERIES[next++ % QUERIES.length], NoteSearchIndex.FIELD_ALL).size();
+    }
+
+    @Benchmark
+    public long statistics(Corpus corpus) {
+        return corpus.store.statistics().getTotalWords();
+    }
+
+    // Word counts are cached per note after the first pass, so this measures the pass itself
+    @Benchmark
+    public long statisticsScan(Corpus corpus) {
+        return NoteStatistics.compute(corpus.list).getTotalWords();
+    }
+
+    @Benchmark
+    public int toFileFormat(Corpus corpus) {
+        return corpus.list.get(next++ % corpus.list.size()).toFileFormat().length();
+    }
+}
@@ -0,0 +1,276 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+// Drives a running server with concurrent clients and reports the rate and latency percentiles of each request.
+//
+//   java -jar target/notes-app-1.0-SNAPSHOT.jar --server                    (in another terminal)
+//   java -cp benchmarks/target/benchmarks.jar notes.NotesLoadGenerator [base url]   (default: http://localhost:8765)
+//
+// -Dload.threads=N          concurrent clients, each with its own keep-alive connection (default 16)
+// -Dload.notes=N            notes created before the run and deleted after it (default 1000)
+// -Dload.writePercent=N     share of requests that update a note (default 10)
+// -Dload.warmupSeconds=N    time before measuring (default 3)
+// -Dload.seconds=N          measured time (default 10)
+// -Dload.seed=N             random seed (default 42)
+//
+// The other requests read a note (55%), search (15%), list a page (10%) or complete a title (10%).
+class NotesLoadGenerator {
+    private static final String[] WORDS = {
+        "meeting", "budget", "project", "review", "release", "design", "customer", "invoice", "travel",
+        "recipe", "journal", "planning", "roadmap", "incident", "summary", "research", "training", "hiring"
+    };
+    private static final String[] OPERATIONS = { "get", "search", "list", "suggest", "update" };
+
+    private static final class Failure extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        Failure(String message) {
+            super(message);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final String baseUrl = args.length > 0 ? args[0] : "http://localhost:" + NoteServer.DEFAULT_PORT;
+        final int threads = Integer.getInteger("load.threads", 16);
+        int noteCount = Integer.getInteger("load.notes", 1000);
+        final int writePercent = Integer.getInteger("load.writePercent", 10);
+        int warmupSeconds = Integer.getInteger("load.warmupSeconds", 3);
+        int seconds = Integer.getInteger("load.seconds", 10);
+        final long seed = Long.getLong("load.seed", 42L);
+
+        // HttpURLConnection keeps only five idle connections per host unless told otherwise
+        System.setProperty("http.maxConnections", String.valueOf(threads));
+
+        System.out.println("Creating " + noteCount + " notes on " + baseUrl + "...");
+        String run = Long.toString(System.currentTimeMillis(), 36);
+        Random random = new Random(seed);
+        final long[] ids = new long[noteCount];
+        for (int i = 0; i < noteCount; i++) {
+            String title = "load " + run + " " + i + " " + WORDS[random.nextInt(WORDS.length)];
+            String response = request(baseUrl, "POST", "/notes?title=" + encode(title), body(random));
+            ids[i] = parseId(response);
+        }
+
+        // Replaced after the warm-up, so only the measured requests are counted
+        final java.util.concurrent.atomic.AtomicReference<NoteMetrics.Timer[]> timers =
+            new java.util.concurrent.atomic.AtomicReference<NoteMetrics.Timer[]>(newTimers());
+        final java.util.concurrent.atomic.LongAdder errors = new java.util.concurrent.atomic.LongAdder();
+        final java.util.concurrent.atomic.AtomicReference<String> lastError = new java.util.concurrent.atomic.AtomicReference<String>();
+        final java.util.concurrent.atomic.AtomicBoolean stop = new java.util.concurrent.atomic.AtomicBoolean();
+
+        Thread[] clients = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int client = t;
+            clients[t] = new Thread(new Runnable() {
+                public void run() {
+                    Random random = new Random(seed + client + 1);
+                    while (!stop.get()) {
+                        int operation = pick(random.nextInt(100), writePercent);
+                        NoteMetrics.Timer timer = timers.get()[operation];
+                        long start = System.nanoTime();
+                        try {
+                            perform(baseUrl, operation, ids, random);
+                            timer.recordSince(start);
+                        } catch (IOException e) {
+                            errors.increment();
+                            lastError.set(e.getMessage());
+                        }
+                    }
+                }
+            }, "load-client-" + t);
+            clients[t].start();
+        }
+
+        System.out.println("Warming up for " + warmupSeconds + " s with " + threads + " clients...");
+        Thread.sleep(warmupSeconds * 1000L);
+        timers.set(newTimers());
+        errors.reset();
+        long start = System.nanoTime();
+        System.out.println("Measuring for " + seconds + " s...");
+        Thread.sleep(seconds * 1000L);
+        NoteMetrics.Timer[] measured = timers.get();
+        long failed = errors.sum();
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        stop.set(true);
+        for (Thread client : clients) {
+            client.join();
+        }
+
+        System.out.printf("%n%-10s %10s %10s %10s %10s %10s %10s %10s%n",
+                          "request", "count", "req/s", "mean ms", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        long total = 0;
+        for (NoteMetrics.Timer timer : measured) {
+            long count = timer.getCount();
+            total += count;
+            System.out.printf("%-10s %10d %10.0f %10.3f %10.3f %10.3f %10.3f %10.3f%n", timer.getName(), count,
+                              count / elapsedSeconds, timer.getMeanNanos() / 1e6, timer.percentileNanos(0.5) / 1e6,
+                              timer.percentileNanos(0.99) / 1e6, timer.percentileNanos(0.999) / 1e6, timer.getMaxNanos() / 1e6);
+        }
+        System.out.printf("%-10s %10d %10.0f%n", "all", total, total / elapsedSeconds);
+        if (failed > 0) {
+            System.out.println(failed + " requests failed; the last with: " + lastError.get());
+        }
+
+        System.out.println("\nDeleting the " + noteCount + " test notes...");
+        for (long id : ids) {
+            request(baseUrl, "DELETE", "/notes/" + id, null);
+        }
+    }
+
+    // The "id" member of the JSON object in a response, whatever the title and content around it hold
+    static long parseId(String json) throws IOException {
+        int at = skipSpace(json, 0);
+        if (at < json.length() && json.charAt(at) == '{') {
+            at = skipSpace(json, at + 1);
+            while (at < json.length() && json.charAt(at) == '"') {
+                int keyEnd = skipValue(json, at);
+                String key = json.substring(at, keyEnd);
+                at = skipSpace(json, keyEnd);
+                if (at >= json.length() || json.charAt(at) != ':') {
+                    break;
+                }
+                int valueStart = skipSpace(json, at + 1);
+                int valueEnd = skipValue(json, valueStart);
+                if (key.equals("\"id\"")) {
+                    try {
+                        return Long.parseLong(json.substring(valueStart, valueEnd));
+                    } catch (NumberFormatException e) {
+                        break;
+                    }
+                }
+                at = skipSpace(json, valueEnd);
+                if (at < json.length() && json.charAt(at) == ',') {
+                    at = skipSpace(json, at + 1);
+                }
+            }
+        }
+        throw new Failure("No note id in the response: " + json);
+    }
+
+    // Just past the string, number, literal, object or array starting at the index
+    private static int skipValue(String json, int at) {
+        int depth = 0;
+        boolean inString = false;
+        for (int i = at; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (inString) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    inString = false;
+                    if (depth == 0) {
+                        return i + 1;
+                    }
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                if (depth == 0) {
+                    return i;
+                }
+                if (--depth == 0) {
+                    return i + 1;
+                }
+            } else if (depth == 0 && (c == ',' || Character.isWhitespace(c))) {
+                return i;
+            }
+        }
+        return json.length();
+    }
+
+    private static int skipSpace(String json, int at) {
+        while (at < json.length() && Character.isWhitespace(json.charAt(at))) {
+            at++;
+        }
+        return at;
+    }
+
+    private static NoteMetrics.Timer[] newTimers() {
+        NoteMetrics.Timer[] timers = new NoteMetrics.Timer[OPERATIONS.length];
+        for (int i = 0; i < OPERATIONS.length; i++) {
+            timers[i] = new NoteMetrics.Timer(OPERATIONS[i]);
+        }
+        return timers;
+    }
+
+    // An index into OPERATIONS for a roll of 0-99
+    private static int pick(int roll, int writePercent) {
+        if (roll < writePercent) {
+            return 4;
+        }
+        double read = (roll - writePercent) * 100.0 / (100 - writePercent);
+        return read < 55 ? 0 : read < 70 ? 1 : read < 80 ? 2 : 3;
+    }
+
+    private static void perform(String baseUrl, int operation, long[] ids, Random random) throws IOException {
+        long id = ids[random.nextInt(ids.length)];
+        switch (operation) {
+            case 0:
+                request(baseUrl, "GET", "/notes/" + id, null);
+                break;
+            case 1:
+                request(baseUrl, "GET", "/search?limit=20&q=" + encode(WORDS[random.nextInt(WORDS.length)]), null);
+                break;
+            case 2:
+                request(baseUrl, "GET", "/notes?limit=20&order=modified&desc=true", null);
+                break;
+            case 3:
+                request(baseUrl, "GET", "/suggest?limit=10&q=" + encode("load " + random.nextInt(10)), null);
+                break;
+            default:
+                request(baseUrl, "PUT", "/notes/" + id, body(random));
+        }
+    }
+
+    // The response body; anything but a 2xx status is a Failure
+    private static String request(String baseUrl, String method, String path, String body) throws IOException {
+        java.net.HttpURLConnection connection = (java.net.HttpURLConnection) new java.net.URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            byte[] bytes = body.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(bytes.length);
+            connection.setRequestProperty("Content-Type", "text/plain; charset=utf-8");
+            OutputStream out = connection.getOutputStream();
+            out.write(bytes);
+            out.close();
+        }
+        int status = connection.getResponseCode();
+        // Reading the body to the end returns the connection to the keep-alive pool
+        InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        if (in != null) {
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                response.write(buffer, 0, count);
+            }
+            in.close();
+        }
+        String text = new String(response.toByteArray(), java.nio.charset.StandardCharsets.UTF_8);
+        if (status / 100 != 2) {
+            throw new Failure(method + " " + path + ": " + status + " " + text);
+        }
+        return text;
+    }
+
+    private static String body(Random random) {
+        StringBuilder body = new StringBuilder();
+        int words = 20 + random.nextInt(200);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                body.append(random.nextInt(12) == 0 ? '\n' : ' ');
+            }
+            body.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return body.toString();
+    }
+
+    private static String encode(String value) throws UnsupportedEncodingException {
+        return java.net.URLEncoder.encode(value, "UTF-8");
+    }
+}
@@ -0,0 +1,253 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+// Exports notes to a directory, one .txt file each, or to one .zip or .tar archive. Names are assigned
+// up front so none collide or overwrite; workers encode, and the caller writes archives in order.
+class BulkNoteExporter {
+    static final int MAX_NAME_LENGTH = 80;
+    static final int ARCHIVE_WINDOW = 256;
+
+    public static class Report {
+        private final File target;
+        private final int exported;
+        private final long bytesWritten;
+
+        Report(File target, int exported, long bytesWritten) {
+            this.target = target;
+            this.exported = exported;
+            this.bytesWritten = bytesWritten;
+        }
+
+        public File getTarget() { return target; }
+        public int getExported() { return exported; }
+
+        // Note text only, not archive headers or compression
+        public long getBytesWritten() { return bytesWritten; }
+    }
+
+    private final int threads;
+
+    public BulkNoteExporter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public BulkNoteExporter(int threads) {
+        this.threads = threads;
+    }
+
+    public Report export(List<Note> notes, File target) throws IOException {
+        String name = target.getName().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".zip") || name.endsWith(".tar")) {
+            return exportArchive(notes, target, name.endsWith(".zip"));
+        }
+        return exportDirectory(notes, target);
+    }
+
+    // A mapped body is copied out without being decoded
+    static java.nio.ByteBuffer[] encode(Note note) {
+        return new java.nio.ByteBuffer[] {
+            java.nio.ByteBuffer.wrap(NoteService.exportHeader(note).getBytes(java.nio.charset.StandardCharsets.UTF_8)),
+            java.nio.ByteBuffer.wrap(note.getContentBytes())
+        };
+    }
+
+    static long writeFile(Note note, java.nio.file.Path path, java.nio.file.OpenOption... options) throws IOException {
+        java.nio.ByteBuffer[] buffers = encode(note);
+        java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(path, append(options, java.nio.file.StandardOpenOption.WRITE));
+        try {
+            long written = 0;
+            while (buffers[buffers.length - 1].hasRemaining()) {
+                written += channel.write(buffers);
+            }
+            return written;
+        } finally {
+            channel.close();
+        }
+    }
+
+    // taken holds lower-cased names in use, since many file systems ignore case
+    static String[] assignNames(List<Note> notes, Set<String> taken) {
+        String[] names = new String[notes.size()];
+        for (int i = 0; i < names.length; i++) {
+            String base = NoteService.fileNameFor(notes.get(i).getTitle());
+            if (base.length() > MAX_NAME_LENGTH) {
+                base = base.substring(0, MAX_NAME_LENGTH);
+            }
+            if (base.isEmpty()) {
+                base = "note";
+            }
+            String candidate = base + ".txt";
+            for (int n = 2; !taken.add(candidate.toLowerCase(Locale.ROOT)); n++) {
+                candidate = base + "_" + n + ".txt";
+            }
+            names[i] = candidate;
+        }
+        return names;
+    }
+
+    private Report exportDirectory(final List<Note> notes, File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory: " + directory.getPath());
+        }
+        HashSet<String> taken = new HashSet<String>();
+        String[] existing = directory.list();
+        if (existing != null) {
+            for (String name : existing) {
+                taken.add(name.toLowerCase(Locale.ROOT));
+            }
+        }
+        final String[] names = assignNames(notes, taken);
+        final java.nio.file.Path root = directory.toPath();
+
+        // A shared counter, so a few large notes do not hold up one worker
+        final java.util.concurrent.atomic.AtomicInteger next = new java.util.concurrent.atomic.AtomicInteger();
+        final java.util.concurrent.atomic.AtomicLong bytes = new java.util.concurrent.atomic.AtomicLong();
+        final java.util.concurrent.atomic.AtomicReference<IOException> failure = new java.util.concurrent.atomic.AtomicReference<IOException>();
+        Thread[] workers = new Thread[Math.max(1, Math.min(threads, notes.size()))];
+        for (int t = 0; t < workers.length; t++) {
+            workers[t] = new Thread(new Runnable() {
+                public void run() {
+                    int i;
+                    while (failure.get() == null && (i = next.getAndIncrement()) < notes.size()) {
+                        try {
+                            bytes.addAndGet(writeFile(notes.get(i), root.resolve(names[i]), java.nio.file.StandardOpenOption.CREATE_NEW));
+                        } catch (IOException e) {
+                            failure.compareAndSet(null, e);
+                        }
+                    }
+                }
+            }, "notes-export-" + t);
+            workers[t].start();
+        }
+        joinAll(workers);
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return new Report(directory, notes.size(), bytes.get());
+    }
+
+    private Report exportArchive(List<Note> notes, File archive, boolean zip) throws IOException {
+        String[] names = assignNames(notes, new HashSet<String>());
+        java.util.concurrent.ExecutorService encoders = java.util.concurrent.Executors.newFixedThreadPool(threads);
+        ArrayDeque<java.util.concurrent.Future<java.nio.ByteBuffer[]>> window = new ArrayDeque<java.util.concurrent.Future<java.nio.ByteBuffer[]>>();
+        java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(archive.toPath(),
+            java.nio.file.StandardOpenOption.CREATE_NEW, java.nio.file.StandardOpenOption.WRITE);
+        boolean complete = false;
+        long bytes = 0;
+        try {
+            OutputStream out = new BufferedOutputStream(java.nio.channels.Channels.newOutputStream(channel), 1 << 16);
+            java.util.zip.ZipOutputStream zipOut = zip ? new java.util.zip.ZipOutputStream(out) : null;
+            int submitted = 0;
+            for (int i = 0; i < notes.size(); i++) {
+                while (submitted < notes.size() && submitted < i + ARCHIVE_WINDOW) {
+                    final Note note = notes.get(submitted++);
+                    window.add(encoders.submit(new java.util.concurrent.Callable<java.nio.ByteBuffer[]>() {
+                        public java.nio.ByteBuffer[] call() {
+                            return encode(note);
+                        }
+                    }));
+                }
+                java.nio.ByteBuffer[] buffers = await(window.poll());
+                long size = buffers[0].remaining() + buffers[1].remaining();
+                long modified = notes.get(i).getModifiedMillis();
+                if (zip) {
+                    java.util.zip.ZipEntry entry = new java.util.zip.ZipEntry(names[i]);
+                    entry.setTime(modified);
+                    zipOut.putNextEntry(entry);
+                    writeBuffers(zipOut, buffers);
+                    zipOut.closeEntry();
+                } else {
+                    out.write(tarHeader(names[i], size, modified));
+                    writeBuffers(out, buffers);
+                    out.write(new byte[(int) (-size & 511)]);
+                }
+                bytes += size;
+            }
+            if (zip) {
+                zipOut.finish();
+            } else {
+                // A tar archive ends with two empty blocks
+                out.write(new byte[1024]);
+            }
+            out.flush();
+            channel.force(false);
+            complete = true;
+        } finally {
+            encoders.shutdownNow();
+            channel.close();
+            if (!complete) {
+                archive.delete();
+            }
+        }
+        return new Report(archive, notes.size(), bytes);
+    }
+
+    // Names from assignNames are ASCII and well under the 100-byte limit
+    static byte[] tarHeader(String name, long size, long modifiedMillis) {
+        byte[] header = new byte[512];
+        byte[] nameBytes = name.getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+        System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+        putOctal(header, 100, 8, 0644);
+        putOctal(header, 108, 8, 0);
+        putOctal(header, 116, 8, 0);
+        putOctal(header, 124, 12, size);
+        putOctal(header, 136, 12, modifiedMillis / 1000);
+        header[156] = '0';
+        System.arraycopy("ustar".getBytes(java.nio.charset.StandardCharsets.US_ASCII), 0, header, 257, 5);
+        header[263] = '0';
+        header[264] = '0';
+
+        // The checksum is computed with its own field filled with spaces
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xFF;
+        }
+        putOctal(header, 148, 7, checksum);
+        return header;
+    }
+
+    private static void putOctal(byte[] header, int offset, int length, long value) {
+        for (int i = offset + length - 2; i >= offset; i--) {
+            header[i] = (byte) ('0' + (value & 7));
+            value >>>= 3;
+        }
+        header[offset + length - 1] = 0;
+    }
+
+    private static void writeBuffers(OutputStream out, java.nio.ByteBuffer[] buffers) throws IOException {
+        for (java.nio.ByteBuffer buffer : buffers) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+    }
+
+    private static java.nio.ByteBuffer[] await(java.util.concurrent.Future<java.nio.ByteBuffer[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Export cancelled");
+        } catch (java.util.concurrent.ExecutionException e) {
+            throw new IOException("Cannot encode note: " + e.getCause(), e.getCause());
+        }
+    }
+
+    private static void joinAll(Thread[] threads) throws IOException {
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Export cancelled");
+            }
+        }
+    }
+
+    private static java.nio.file.OpenOption[] append(java.nio.file.OpenOption[] options, java.nio.file.OpenOption option) {
+        java.nio.file.OpenOption[] all = Arrays.copyOf(options, options.length + 1);
+        all[options.length] = option;
+        return all;
+    }
+}
@@ -0,0 +1,213 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+// Imports a directory tree, one note per file: a walker feeds a pool of readers, and the calling thread
+// stages the notes and adds them as one change. At most maxInFlight files are in flight.
+class BulkNoteImporter {
+    static final int DEFAULT_MAX_IN_FLIGHT = 256;
+    static final int BATCH_SIZE = 128;
+    static final int MAX_ERRORS = 1000;
+
+    public interface Listener {
+        void progress(Report report);
+    }
+
+    public static class Report {
+        private int filesFound = -1;
+        private int processed;
+        private int imported;
+        private int failed;
+        private final List<String> errors = new ArrayList<String>();
+
+        // -1 until the whole tree has been walked
+        public int getFilesFound() { return filesFound; }
+        public int getProcessed() { return processed; }
+        public int getImported() { return imported; }
+        public int getFailed() { return failed; }
+
+        // Only the first MAX_ERRORS failures are kept, including the one that stopped the walk
+        public List<String> getErrors() { return errors; }
+
+        private void fail(File file, String message) {
+            failed++;
+            error(file.getPath() + ": " + message);
+        }
+
+        private void error(String error) {
+            if (errors.size() < MAX_ERRORS) {
+                errors.add(error);
+            }
+        }
+    }
+
+    // The end marker has no file and carries the count found and the error that stopped the walk, if any
+    private static final class Result {
+        final File file;
+        final String content;
+        final String error;
+        final int count;
+
+        Result(File file, String content, String error, int count) {
+            this.file = file;
+            this.content = content;
+            this.error = error;
+            this.count = count;
+        }
+
+        boolean isEnd() { return file == null; }
+    }
+
+    private final NoteService service;
+    private final int threads;
+    private final int maxInFlight;
+
+    public BulkNoteImporter(NoteService service) {
+        // Reads mostly wait on the disk
+        this(service, 2 * Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    public BulkNoteImporter(NoteService service, int threads, int maxInFlight) {
+        this.service = service;
+        this.threads = threads;
+        this.maxInFlight = maxInFlight;
+    }
+
+    public Report run(final File directory, Listener listener) throws IOException {
+        if (!directory.isDirectory()) {
+            throw new FileNotFoundException("Directory not found: " + directory.getPath());
+        }
+
+        final Report report = new Report();
+        final java.util.concurrent.BlockingQueue<Result> results = new java.util.concurrent.LinkedBlockingQueue<Result>();
+        final java.util.concurrent.Semaphore inFlight = new java.util.concurrent.Semaphore(maxInFlight);
+        final java.util.concurrent.ExecutorService readers = java.util.concurrent.Executors.newFixedThreadPool(threads,
+            new java.util.concurrent.ThreadFactory() {
+                private int next;
+
+                public synchronized Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "notes-import-" + next++);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+        Thread walker = new Thread(new Runnable() {
+            public void run() {
+                final int[] found = new int[1];
+                String stopped = null;
+                try {
+                    java.nio.file.Files.walkFileTree(directory.toPath(), new java.nio.file.SimpleFileVisitor<java.nio.file.Path>() {
+                        public java.nio.file.FileVisitResult visitFile(java.nio.file.Path path,
+                                java.nio.file.attribute.BasicFileAttributes attributes) throws IOException {
+                            if (attributes.isRegularFile()) {
+                                submit(path.toFile(), null);
+                            }
+                            return java.nio.file.FileVisitResult.CONTINUE;
+                        }
+
+                        public java.nio.file.FileVisitResult visitFileFailed(java.nio.file.Path path, IOException e) throws IOException {
+                            submit(path.toFile(), "Cannot read: " + e.getMessage());
+                            return java.nio.file.FileVisitResult.CONTINUE;
+                        }
+
+                        // Blocks while maxInFlight files are waiting; the permit is returned once the note is staged
+                        private void submit(final File file, final String error) throws IOException {
+                            try {
+                                inFlight.acquire();
+                            } catch (InterruptedException e) {
+                                throw new InterruptedIOException("Import cancelled");
+                            }
+                            if (error != null) {
+                                results.add(new Result(file, null, error, 0));
+                                found[0]++;
+                                return;
+                            }
+                            readers.execute(new Runnable() {
+                                public void run() {
+                                    try {
+                                        String content = NoteService.readFileContent(file);
+                                        results.add(content.isEmpty()
+                                                    ? new Result(file, null, "File is empty!", 0)
+                                                    : new Result(file, content, null, 0));
+                                    } catch (IOException e) {
+                                        results.add(new Result(file, null, "Cannot read: " + e.getMessage(), 0));
+                                    } catch (RuntimeException e) {
+                                        results.add(new Result(file, null, e.toString(), 0));
+                                    }
+                                }
+                            });
+                            found[0]++;
+                        }
+                    });
+                } catch (InterruptedIOException e) {
+                    // The import was abandoned; nobody is waiting for the end marker
+                } catch (IOException e) {
+                    stopped = directory.getPath() + ": import stopped early: " + e.getMessage();
+                } catch (RuntimeException e) {
+                    stopped = directory.getPath() + ": import stopped early: " + e;
+                } finally {
+                    results.add(new Result(null, null, stopped, found[0]));
+                }
+            }
+        }, "notes-import-walker");
+        walker.setDaemon(true);
+        walker.start();
+
+        ArrayList<Result> batch = new ArrayList<Result>(BATCH_SIZE);
+        List<Note> staged = new ArrayList<Note>();
+        try {
+            while (report.filesFound < 0 || report.processed < report.filesFound) {
+                batch.clear();
+                batch.add(results.take());
+                results.drainTo(batch, BATCH_SIZE - 1);
+                for (Result result : batch) {
+                    if (result.isEnd()) {
+                        report.filesFound = result.count;
+                        if (result.error != null) {
+                            report.error(result.error);
+                        }
+                        continue;
+                    }
+                    try {
+                        if (result.error != null) {
+                            report.fail(result.file, result.error);
+                        } else {
+                            String title = service.importTitle(titleFor(result.file), staged.size());
+                            Note note = NoteService.newNote(title, result.content);
+                            NoteJournal.checkRecordLength(title, title, note.getStoredLength());
+                            staged.add(note);
+                            report.imported++;
+                        }
+                    } catch (IllegalArgumentException e) {
+                        report.fail(result.file, e.getMessage());
+                    } finally {
+                        report.processed++;
+                        inFlight.release();
+                    }
+                }
+                if (listener != null) {
+                    listener.progress(report);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import cancelled");
+        } finally {
+            walker.interrupt();
+            readers.shutdownNow();
+        }
+
+        service.addAllImported(staged);
+        service.getStore().flush();
+        return report;
+    }
+
+    // An empty result lets importTitle() pick Imported_Note_<n>
+    static String titleFor(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+}
@@ -0,0 +1,234 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+// A zlib-compressed body, on the heap or in a mapped file. Same bytes, same level, same output, so
+// two bodies are equal exactly when their compressed bytes are.
+final class CompressedBody {
+    private static final int LEVEL = java.util.zip.Deflater.DEFAULT_COMPRESSION;
+
+    // Null when read from source
+    private final byte[] data;
+    private final MappedNoteFile source;
+    private final long offset;
+    private final int storedLength;
+    final int byteLength;
+    final int charLength;
+    private int hash;
+
+    CompressedBody(byte[] data, int byteLength, int charLength) {
+        this(data, null, 0, data.length, byteLength, charLength);
+    }
+
+    CompressedBody(MappedNoteFile source, long offset, int storedLength, int byteLength, int charLength) {
+        this(null, source, offset, storedLength, byteLength, charLength);
+    }
+
+    private CompressedBody(byte[] data, MappedNoteFile source, long offset, int storedLength, int byteLength, int charLength) {
+        this.data = data;
+        this.source = source;
+        this.offset = offset;
+        this.storedLength = storedLength;
+        this.byteLength = byteLength;
+        this.charLength = charLength;
+    }
+
+    // Null unless compression saves at least an eighth of the bytes
+    static CompressedBody compress(String content) {
+        byte[] bytes = content.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        java.util.zip.Deflater deflater = new java.util.zip.Deflater(LEVEL);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            byte[] output = new byte[bytes.length - bytes.length / 8];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == output.length) {
+                    return null;
+                }
+                length += deflater.deflate(output, length, output.length - length);
+            }
+            return new CompressedBody(Arrays.copyOf(output, length), bytes.length, content.length());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    boolean isMapped() { return data == null; }
+
+    int getStoredLength() { return storedLength; }
+
+    byte[] getStoredBytes() {
+        return data != null ? data : source.copy(offset, storedLength);
+    }
+
+    String decode() {
+        return new String(inflate(), java.nio.charset.StandardCharsets.UTF_8);
+    }
+
+    byte[] inflate() {
+        return inflate(byteLength);
+    }
+
+    // Inflation stops after maxBytes bytes
+    byte[] inflate(int maxBytes) {
+        byte[] output = new byte[Math.min(maxBytes, byteLength)];
+        java.util.zip.Inflater inflater = new java.util.zip.Inflater();
+        try {
+            inflater.setInput(getStoredBytes());
+            int length = 0;
+            while (length < output.length) {
+                int count = inflater.inflate(output, length, output.length - length);
+                if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Compressed note body is truncated");
+                }
+                length += count;
+            }
+            return output;
+        } catch (java.util.zip.DataFormatException e) {
+            throw new IllegalStateException("Compressed note body is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof CompressedBody && Arrays.equals(getStoredBytes(), ((CompressedBody) other).getStoredBytes());
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = Arrays.hashCode(getStoredBytes());
+            hash = h;
+        }
+        return h;
+    }
+
+    // Encodes and compresses text a piece at a time into a spool file, which the finished body maps.
+    // Close it if it is abandoned unfinished.
+    static final class Writer implements Closeable {
+        static final int MAX_LENGTH = Integer.MAX_VALUE - 8;
+        // About 3x faster than the default level for a fifth more bytes
+        private static final int STREAM_LEVEL = java.util.zip.Deflater.BEST_SPEED;
+        private static final int BUFFER_SIZE = 8192;
+
+        private final java.util.zip.Deflater deflater = new java.util.zip.Deflater(STREAM_LEVEL);
+        private final java.nio.charset.CharsetEncoder encoder = java.nio.charset.StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(java.nio.charset.CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(java.nio.charset.CodingErrorAction.REPLACE);
+        private final char[] pending = new char[BUFFER_SIZE];
+        private int pendingLength;
+        private final java.nio.ByteBuffer encoded = java.nio.ByteBuffer.allocate(BUFFER_SIZE * 3);
+        private final byte[] output = new byte[BUFFER_SIZE];
+        private int outputLength;
+        private long byteLength;
+        private long charLength;
+        private final File spool;
+        private OutputStream spoolOut;
+
+        Writer(File spool) throws IOException {
+            this.spool = spool;
+            this.spoolOut = new FileOutputStream(spool);
+        }
+
+        void append(char[] chars, int offset, int length) throws IOException {
+            charLength += length;
+            while (length > 0) {
+                if (pendingLength == pending.length) {
+                    encode(false);
+                }
+                int count = Math.min(length, pending.length - pendingLength);
+                System.arraycopy(chars, offset, pending, pendingLength, count);
+                pendingLength += count;
+                offset += count;
+                length -= count;
+            }
+        }
+
+        void append(String text) throws IOException {
+            char[] chars = text.toCharArray();
+            append(chars, 0, chars.length);
+        }
+
+        long length() { return charLength; }
+
+        CompressedBody finish() throws IOException {
+            encode(true);
+            deflater.finish();
+            while (!deflater.finished()) {
+                drain();
+            }
+            try {
+                spoolOutput();
+                spoolOut.close();
+                spoolOut = null;
+                MappedNoteFile mapped = MappedNoteFile.open(spool);
+                if (mapped.size() > MAX_LENGTH) {
+                    throw new IllegalArgumentException("Text is too long for one note (over 2 GB once compressed)");
+                }
+                return new CompressedBody(mapped, 0, (int) mapped.size(), (int) byteLength, (int) charLength);
+            } finally {
+                close();
+            }
+        }
+
+        // Where a mapped file cannot be deleted, NoteStore.open() does it
+        public void close() {
+            deflater.end();
+            if (spoolOut != null) {
+                try {
+                    spoolOut.close();
+                } catch (IOException e) {
+                    // Being discarded anyway
+                }
+                spoolOut = null;
+            }
+            spool.delete();
+        }
+
+        // A trailing high surrogate waits for the character after it
+        private void encode(boolean endOfInput) throws IOException {
+            java.nio.CharBuffer chars = java.nio.CharBuffer.wrap(pending, 0, pendingLength);
+            while (encoder.encode(chars, encoded, endOfInput).isOverflow()) {
+                deflate();
+            }
+            if (endOfInput) {
+                while (encoder.flush(encoded).isOverflow()) {
+                    deflate();
+                }
+            }
+            deflate();
+            pendingLength = chars.remaining();
+            System.arraycopy(pending, chars.position(), pending, 0, pendingLength);
+        }
+
+        private void deflate() throws IOException {
+            encoded.flip();
+            byteLength += encoded.remaining();
+            if (byteLength > MAX_LENGTH) {
+                throw new IllegalArgumentException("Text is too long for one note (over 2 GB once encoded)");
+            }
+            deflater.setInput(encoded.array(), encoded.position(), encoded.remaining());
+            while (!deflater.needsInput()) {
+                drain();
+            }
+            encoded.clear();
+        }
+
+        private void drain() throws IOException {
+            if (outputLength == output.length) {
+                spoolOutput();
+            }
+            outputLength += deflater.deflate(output, outputLength, output.length - outputLength);
+        }
+
+        private void spoolOutput() throws IOException {
+            spoolOut.write(output, 0, outputLength);
+            outputLength = 0;
+        }
+    }
+}
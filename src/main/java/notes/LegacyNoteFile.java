@@ -0,0 +1,71 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+// Reader for the original text store, kept only to migrate it.
+class LegacyNoteFile {
+    public static List<Note> read(File file) throws IOException {
+        ArrayList<Note> notes = new ArrayList<Note>();
+        BufferedReader bufferedReader = new BufferedReader(new FileReader(file));
+        
+        try {
+            String line;
+            StringBuilder contentBuilder = new StringBuilder();
+            boolean readingContent = false;
+            String title = "";
+            long now = System.currentTimeMillis();
+            long createdMillis = now;
+            long modifiedMillis = now;
+            
+            while ((line = bufferedReader.readLine()) != null) {
+                if (line.startsWith("TITLE:")) {
+                    title = line.substring(6); 
+                    readingContent = false;
+                    contentBuilder.setLength(0); 
+                    
+                } else if (line.startsWith("CREATED:")) {
+                    try {
+                        createdMillis = NoteDates.parse(NoteDates.STORAGE, line.substring(8));
+                    } catch (java.time.format.DateTimeParseException e) {
+                        createdMillis = now;
+                    }
+                    
+                } else if (line.startsWith("MODIFIED:")) {
+                    try {
+                        modifiedMillis = NoteDates.parse(NoteDates.STORAGE, line.substring(9));
+                    } catch (java.time.format.DateTimeParseException e) {
+                        modifiedMillis = now;
+                    }
+                    
+                } else if (line.equals("CONTENT:")) {
+                    readingContent = true;
+                    
+                } else if (line.equals("---END-NOTE---")) {
+                    if (!title.isEmpty()) {
+                        notes.add(new Note(title, contentBuilder.toString().trim(), createdMillis, modifiedMillis));
+                    }
+                    readingContent = false;
+                    contentBuilder.setLength(0);
+                    title = "";
+                    
+                } else if (readingContent) {
+                    if (contentBuilder.length() > 0) {
+                        contentBuilder.append("\n");
+                    }
+                    contentBuilder.append(line);
+                }
+            }
+        } finally {
+            bufferedReader.close();
+        }
+        return notes;
+    }
+    
+    // The text file is left in place as a backup
+    public static int migrate(File textFile, File dataFile) throws IOException {
+        List<Note> notes = read(textFile);
+        NoteJournal.writeSnapshot(dataFile, notes);
+        return notes.size();
+    }
+}
@@ -0,0 +1,167 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+// Read-only mapping of the binary notes file; bodies are decoded from it on demand.
+class MappedNoteFile {
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_SIZE = 1L << CHUNK_SHIFT;
+
+    // One MappedByteBuffer is limited to 2 GB
+    private final java.nio.MappedByteBuffer[] chunks;
+    private final long size;
+    private boolean damaged;
+    private long nextId;
+
+    private MappedNoteFile(java.nio.MappedByteBuffer[] chunks, long size) {
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    public static MappedNoteFile open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            java.nio.channels.FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            java.nio.MappedByteBuffer[] chunks = new java.nio.MappedByteBuffer[(int) ((size + CHUNK_SIZE - 1) >>> CHUNK_SHIFT)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = (long) i << CHUNK_SHIFT;
+                chunks[i] = channel.map(java.nio.channels.FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE, size - start));
+            }
+            return new MappedNoteFile(chunks, size);
+        } finally {
+            raf.close();
+        }
+    }
+
+    public long size() { return size; }
+
+    public boolean isDamaged() { return damaged; }
+
+    public long getNextId() { return nextId; }
+
+    private byte byteAt(long position) {
+        return chunks[(int) (position >>> CHUNK_SHIFT)].get((int) (position & (CHUNK_SIZE - 1)));
+    }
+
+    int intAt(long position) {
+        return ((byteAt(position) & 0xFF) << 24) | ((byteAt(position + 1) & 0xFF) << 16)
+             | ((byteAt(position + 2) & 0xFF) << 8) | (byteAt(position + 3) & 0xFF);
+    }
+
+    long longAt(long position) {
+        return ((long) intAt(position) << 32) | (intAt(position + 4) & 0xFFFFFFFFL);
+    }
+
+    public byte[] copy(long offset, int length) {
+        NoteMetrics.BYTES_READ.add(length);
+        byte[] bytes = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            long position = offset + copied;
+            java.nio.ByteBuffer chunk = chunks[(int) (position >>> CHUNK_SHIFT)].duplicate();
+            chunk.position((int) (position & (CHUNK_SIZE - 1)));
+            int count = Math.min(length - copied, chunk.remaining());
+            chunk.get(bytes, copied, count);
+            copied += count;
+        }
+        return bytes;
+    }
+
+    public String decode(long offset, int length) {
+        return new String(copy(offset, length), java.nio.charset.StandardCharsets.UTF_8);
+    }
+
+    public int countWords(long offset, int length) {
+        NoteMetrics.BYTES_READ.add(length);
+        int words = 0;
+        boolean inWord = false;
+        long position = offset;
+        long end = offset + length;
+        while (position < end) {
+            java.nio.MappedByteBuffer chunk = chunks[(int) (position >>> CHUNK_SHIFT)];
+            int index = (int) (position & (CHUNK_SIZE - 1));
+            int limit = (int) Math.min(chunk.limit(), index + (end - position));
+            for (int i = index; i < limit; i++) {
+                boolean separator = Note.isWordSeparator(chunk.get(i));
+                if (!separator && !inWord) {
+                    words++;
+                }
+                inWord = !separator;
+            }
+            position += limit - index;
+        }
+        return words;
+    }
+
+    // Jumps over bodies by their length prefix. CRCs are not checked, as that would fault in every page.
+    public List<Note> readNotes() throws IOException {
+        ArrayList<Note> notes = new ArrayList<Note>();
+        damaged = false;
+        if (size == 0) {
+            return notes;
+        }
+        if (size < NoteFileWriter.headerLength(NoteFileWriter.VERSION_WITHOUT_IDS)) {
+            throw new IOException("Not a notes data file");
+        }
+        int version = NoteFileReader.checkHeader(intAt(0), intAt(4));
+        int headerLength = NoteFileWriter.headerLength(version);
+        int minLength = NoteFileWriter.minRecordLength(version);
+        if (size < headerLength) {
+            throw new IOException("Not a notes data file");
+        }
+        nextId = version == NoteFileWriter.VERSION_WITHOUT_IDS ? 0 : longAt(8);
+        // Version 1 records have no id
+        int base = headerLength - 8;
+
+        long position = headerLength;
+        while (position < size) {
+            int length = size - position >= 4 ? intAt(position) : -1;
+            if (length < minLength || length > size - position - 8) {
+                damaged = true;
+                break;
+            }
+
+            long record = position + 4;
+            long fields = record + base;
+            int titleLength = intAt(fields + 16);
+            if (titleLength < 0 || titleLength > length - minLength) {
+                damaged = true;
+                break;
+            }
+            String title = decode(fields + 20, titleLength);
+            long contentField = fields + 20 + titleLength;
+            int contentLength = intAt(contentField);
+            long bodyStart = contentField + 8;
+            byte encoding = NoteFileWriter.BODY_RAW;
+            if (version == NoteFileWriter.VERSION) {
+                encoding = byteAt(bodyStart++);
+            }
+            int bodyLength = (int) (record + length - bodyStart);
+            long createdMillis = longAt(fields);
+            long modifiedMillis = longAt(fields + 8);
+
+            Note note;
+            if (encoding == NoteFileWriter.BODY_RAW) {
+                note = new Note(title, this, bodyStart, bodyLength, contentLength, createdMillis, modifiedMillis);
+            } else if (encoding == NoteFileWriter.BODY_DEFLATE) {
+                CompressedBody content = new CompressedBody(this, bodyStart, bodyLength, intAt(contentField + 4), contentLength);
+                note = new Note(title, content, createdMillis, modifiedMillis);
+            } else {
+                int shared = encoding == NoteFileWriter.BODY_SHARED && bodyLength == 4 ? intAt(bodyStart) : -1;
+                if (shared < 0 || shared >= notes.size()) {
+                    damaged = true;
+                    break;
+                }
+                note = notes.get(shared).withSameBody(title, createdMillis, modifiedMillis);
+            }
+            if (base > 0) {
+                note.id = longAt(record);
+            }
+            notes.add(note);
+            position = record + length + 4;
+        }
+        return notes;
+    }
+}
@@ -0,0 +1,338 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+class Note {
+    // Published through the volatile field so readers need no lock; the caller serializes writers
+    private static class Version {
+        final String title;
+        // A String or a CompressedBody; null in a MappedVersion
+        final Object body;
+        final long createdMillis;
+        final long modifiedMillis;
+        final int contentLength;
+        
+        int wordCount = -1;
+        
+        Version(String title, Object body, int contentLength, long createdMillis, long modifiedMillis) {
+            this.title = title;
+            this.body = body;
+            this.contentLength = contentLength;
+            this.createdMillis = createdMillis;
+            this.modifiedMillis = modifiedMillis;
+        }
+        
+        Version(String title, String content, long createdMillis, long modifiedMillis) {
+            this(title, content, content.length(), createdMillis, modifiedMillis);
+        }
+        
+        Version(String title, CompressedBody content, long createdMillis, long modifiedMillis) {
+            this(title, content, content.charLength, createdMillis, modifiedMillis);
+        }
+        
+        Version with(String newTitle, long newCreatedMillis, long newModifiedMillis) {
+            return new Version(newTitle, body, contentLength, newCreatedMillis, newModifiedMillis);
+        }
+        
+        Version withTitle(String newTitle) {
+            Version version = with(newTitle, createdMillis, System.currentTimeMillis());
+            version.wordCount = wordCount;
+            return version;
+        }
+        
+        Version withBody(Object newBody) {
+            Version version = new Version(title, newBody, contentLength, createdMillis, modifiedMillis);
+            version.wordCount = wordCount;
+            return version;
+        }
+        
+        String content() {
+            return body instanceof String ? (String) body : ((CompressedBody) body).decode();
+        }
+        
+        byte[] contentBytes() {
+            return body instanceof String ? ((String) body).getBytes(java.nio.charset.StandardCharsets.UTF_8) 
+                                          : ((CompressedBody) body).inflate();
+        }
+        
+        String contentPrefix(int maxLength) {
+            if (body instanceof String) {
+                return (String) body;
+            }
+            return new String(((CompressedBody) body).inflate(maxLength * 3), java.nio.charset.StandardCharsets.UTF_8);
+        }
+        
+        int countWords() {
+            return Note.countWords(content());
+        }
+        
+        long storedLength() {
+            return body instanceof String ? Note.utf8Length((String) body) : ((CompressedBody) body).getStoredLength();
+        }
+    }
+    
+    private static final class MappedVersion extends Version {
+        final MappedNoteFile contentSource;
+        final long contentOffset;
+        final int contentByteLength;
+        
+        MappedVersion(String title, MappedNoteFile contentSource, long contentOffset, int contentByteLength, 
+                      int contentLength, long createdMillis, long modifiedMillis) {
+            super(title, null, contentLength, createdMillis, modifiedMillis);
+            this.contentSource = contentSource;
+            this.contentOffset = contentOffset;
+            this.contentByteLength = contentByteLength;
+        }
+        
+        @Override
+        Version with(String newTitle, long newCreatedMillis, long newModifiedMillis) {
+            return new MappedVersion(newTitle, contentSource, contentOffset, contentByteLength, contentLength, 
+                                     newCreatedMillis, newModifiedMillis);
+        }
+        
+        @Override
+        String content() {
+            return contentSource.decode(contentOffset, contentByteLength);
+        }
+        
+        @Override
+        byte[] contentBytes() {
+            return contentSource.copy(contentOffset, contentByteLength);
+        }
+        
+        @Override
+        String contentPrefix(int maxLength) {
+            return contentSource.decode(contentOffset, Math.min(contentByteLength, maxLength * 3));
+        }
+        
+        @Override
+        int countWords() {
+            return contentSource.countWords(contentOffset, contentByteLength);
+        }
+        
+        @Override
+        long storedLength() {
+            return contentByteLength;
+        }
+    }
+    
+    private volatile Version version;
+    
+    // 0 until the note is added
+    long id;
+    
+    public Note(String title, String content) {
+        long now = System.currentTimeMillis();
+        this.version = new Version(title, content, now, now);
+    }
+    
+    public Note(String title, String content, long createdMillis, long modifiedMillis) {
+        this.version = new Version(title, content, createdMillis, modifiedMillis);
+    }
+    
+    Note(String title, MappedNoteFile contentSource, long contentOffset, int contentByteLength, 
+         int contentLength, long createdMillis, long modifiedMillis) {
+        this.version = new MappedVersion(title, contentSource, contentOffset, contentByteLength, 
+                                         contentLength, createdMillis, modifiedMillis);
+    }
+    
+    Note(String title, CompressedBody content, long createdMillis, long modifiedMillis) {
+        this.version = new Version(title, content, createdMillis, modifiedMillis);
+    }
+    
+    private Note(Version version) {
+        this.version = version;
+    }
+    
+    public long getId() { return id; }
+    
+    public String getTitle() { return version.title; }
+    
+    public String getContent() {
+        return content(version);
+    }
+    
+    // Bypasses NoteContentCache
+    String readContent() {
+        return version.content();
+    }
+    
+    private static String content(Version v) {
+        if (v.body instanceof String) {
+            return (String) v.body;
+        }
+        NoteContentCache cache = NoteContentCache.SHARED;
+        String content = cache.content(v);
+        if (content == null) {
+            content = v.content();
+            cache.putContent(v, content);
+        }
+        return content;
+    }
+    
+    byte[] getContentBytes() {
+        return version.contentBytes();
+    }
+    
+    long getStoredLength() {
+        return version.storedLength();
+    }
+    
+    Object getBody() {
+        return version.body;
+    }
+    
+    // An equal body; the note does not count as modified
+    void setBody(Object body) {
+        Version previous = version;
+        version = previous.withBody(body);
+        NoteContentCache.SHARED.moved(previous, version);
+    }
+    
+    Note withSameBody(String title, long createdMillis, long modifiedMillis) {
+        return new Note(version.with(title, createdMillis, modifiedMillis));
+    }
+    
+    public int getContentLength() {
+        return version.contentLength;
+    }
+    
+    public String getContentPreview(int maxLength) {
+        Version v = version;
+        if (v.contentLength <= maxLength && v.body instanceof String) {
+            return (String) v.body;
+        }
+        return preview(v, maxLength, false);
+    }
+    
+    public String getPreviewLine(int maxLength) {
+        return preview(version, maxLength, true);
+    }
+    
+    private static String preview(Version v, int maxLength, boolean singleLine) {
+        NoteContentCache cache = NoteContentCache.SHARED;
+        String preview = cache.preview(v, maxLength, singleLine);
+        if (preview == null) {
+            if (v.contentLength <= maxLength) {
+                preview = content(v);
+            } else {
+                preview = v.contentPrefix(maxLength).substring(0, maxLength) + "...";
+            }
+            if (singleLine) {
+                preview = preview.replace('\n', ' ');
+            }
+            cache.putPreview(v, maxLength, singleLine, preview);
+        }
+        return preview;
+    }
+    
+    // Same count as content.split("\\s+").length for trimmed, non-empty content
+    public int getWordCount() {
+        Version v = version;
+        if (v.wordCount < 0) {
+            v.wordCount = v.countWords();
+        }
+        return v.wordCount;
+    }
+    
+    static int countWords(String text) {
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            boolean separator = isWordSeparator(text.charAt(i));
+            if (!separator && !inWord) {
+                words++;
+            }
+            inWord = !separator;
+        }
+        return words;
+    }
+    
+    static long utf8Length(String text) {
+        long length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+    
+    static boolean isWordSeparator(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+    
+    public long getCreatedMillis() { return version.createdMillis; }
+    public long getModifiedMillis() { return version.modifiedMillis; }
+    
+    public void setTitle(String title) { 
+        Version previous = version;
+        version = previous.withTitle(title);
+        NoteContentCache.SHARED.moved(previous, version);
+    }
+    
+    public void setContent(String content) { 
+        Version v = version;
+        version = new Version(v.title, content, v.createdMillis, System.currentTimeMillis());
+        NoteContentCache.SHARED.invalidate(v);
+    }
+    
+    void update(String title, String content) {
+        Version v = version;
+        if (title == null) {
+            title = v.title;
+        }
+        if (content == null) {
+            version = v.withTitle(title);
+            NoteContentCache.SHARED.moved(v, version);
+        } else {
+            version = new Version(title, content, v.createdMillis, System.currentTimeMillis());
+            NoteContentCache.SHARED.invalidate(v);
+        }
+    }
+    
+    // Including the dates (journal replay)
+    void replaceWith(Note other) {
+        Version previous = version;
+        this.version = other.version;
+        NoteContentCache.SHARED.invalidate(previous);
+    }
+    
+    Note copy() {
+        Note copy = new Note(version);
+        copy.id = id;
+        return copy;
+    }
+    
+    static String titleKey(String title) {
+        return title.toLowerCase(Locale.ROOT);
+    }
+    
+    public String toFileFormat() {
+        Version v = version;
+        return "TITLE:" + v.title + "\n" +
+               "CREATED:" + NoteDates.format(NoteDates.STORAGE, v.createdMillis) + "\n" +
+               "MODIFIED:" + NoteDates.format(NoteDates.STORAGE, v.modifiedMillis) + "\n" +
+               "CONTENT:\n" + v.content() + "\n" +
+               "---END-NOTE---\n";
+    }
+    
+    @Override
+    public String toString() {
+        Version v = version;
+        return String.format("Title: %s\nCreated: %s | Modified: %s\nContent: %s\n", 
+                           v.title, NoteDates.format(NoteDates.SHORT, v.createdMillis), 
+                           NoteDates.format(NoteDates.SHORT, v.modifiedMillis), getContentPreview(50));
+    }
+}
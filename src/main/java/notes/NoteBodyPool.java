@@ -0,0 +1,76 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+// Notes with equal bodies share one reference-counted copy, compressed past compressAbove when that
+// saves space. Mapped and short bodies are left alone.
+class NoteBodyPool {
+    static final int MIN_SHARED_LENGTH = 256;
+
+    private static final class Entry {
+        final Object body;
+        int references;
+
+        Entry(Object body) {
+            this.body = body;
+        }
+    }
+
+    // Negative to never compress
+    private final int compressAbove;
+    // Guarded by this
+    private final HashMap<Object, Entry> bodies = new HashMap<Object, Entry>();
+
+    NoteBodyPool(int compressAbove) {
+        this.compressAbove = compressAbove;
+    }
+
+    static boolean isShared(Object body) {
+        if (body instanceof String) {
+            return ((String) body).length() >= MIN_SHARED_LENGTH;
+        }
+        return body instanceof CompressedBody && !((CompressedBody) body).isMapped();
+    }
+
+    // A String may come back compressed; bodies that are not shared come back as they are
+    Object acquire(Object body) {
+        if (!isShared(body)) {
+            return body;
+        }
+        if (body instanceof String && compressAbove >= 0 && ((String) body).length() >= compressAbove) {
+            CompressedBody compressed = CompressedBody.compress((String) body);
+            if (compressed != null) {
+                body = compressed;
+            }
+        }
+        // Both kinds of body cache their hash, so it is computed outside the lock
+        body.hashCode();
+        synchronized (this) {
+            Entry entry = bodies.get(body);
+            if (entry == null) {
+                entry = new Entry(body);
+                bodies.put(body, entry);
+            }
+            entry.references++;
+            return entry.body;
+        }
+    }
+
+    void release(Object body) {
+        if (!isShared(body)) {
+            return;
+        }
+        body.hashCode();
+        synchronized (this) {
+            Entry entry = bodies.get(body);
+            if (entry != null && entry.body == body && --entry.references == 0) {
+                bodies.remove(body);
+            }
+        }
+    }
+
+    synchronized void clear() {
+        bodies.clear();
+    }
+}
@@ -0,0 +1,230 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+// Decoded bodies and previews, keyed by the Note version they were built from so a changed note is never
+// served a stale one. LRU, bounded by entries and estimated heap, split into separately locked segments.
+final class NoteContentCache {
+    static final int DEFAULT_MAX_ENTRIES = 10000;
+    static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+    // -Dnotes.cache.entries=N and -Dnotes.cache.bytes=N; 0 turns it off
+    static final NoteContentCache SHARED = new NoteContentCache(Integer.getInteger("notes.cache.entries", DEFAULT_MAX_ENTRIES),
+                                                                Long.getLong("notes.cache.bytes", DEFAULT_MAX_BYTES));
+    private static final int SEGMENTS = 16;
+    private static final int PREVIEWS = 4;
+    private static final int ENTRY_OVERHEAD = 96;
+    private static final int STRING_OVERHEAD = 40;
+
+    private static final class Entry {
+        String content;
+        // previews[i] is of the kind kinds[i] (see kind()); slots are reused in turn
+        final int[] kinds = new int[PREVIEWS];
+        final String[] previews = new String[PREVIEWS];
+        int nextPreview;
+        long weight = ENTRY_OVERHEAD;
+    }
+
+    private static final class Segment {
+        // Access order: the first entry is the least recently used
+        final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true);
+        long weight;
+    }
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final int segmentEntries;
+    private final long segmentBytes;
+    private final java.util.concurrent.atomic.LongAdder hits = new java.util.concurrent.atomic.LongAdder();
+    private final java.util.concurrent.atomic.LongAdder misses = new java.util.concurrent.atomic.LongAdder();
+    private final java.util.concurrent.atomic.LongAdder evictions = new java.util.concurrent.atomic.LongAdder();
+
+    NoteContentCache(int maxEntries, long maxBytes) {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+        segmentEntries = (Math.max(0, maxEntries) + SEGMENTS - 1) / SEGMENTS;
+        segmentBytes = Math.max(0, maxBytes) / SEGMENTS;
+    }
+
+    long getHits() { return hits.sum(); }
+    long getMisses() { return misses.sum(); }
+    long getEvictions() { return evictions.sum(); }
+
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    long getWeightBytes() {
+        long weight = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                weight += segment.weight;
+            }
+        }
+        return weight;
+    }
+
+    String content(Object key) {
+        Segment segment = segment(key);
+        String content;
+        synchronized (segment) {
+            Entry entry = segment.entries.get(key);
+            content = entry == null ? null : entry.content;
+        }
+        count(content != null);
+        return content;
+    }
+
+    void putContent(Object key, String content) {
+        Segment segment = segment(key);
+        synchronized (segment) {
+            Entry entry = entry(segment, key, weigh(content));
+            if (entry != null && entry.content == null) {
+                entry.content = content;
+                add(segment, entry, weigh(content));
+            }
+        }
+    }
+
+    String preview(Object key, int maxLength, boolean singleLine) {
+        int kind = kind(maxLength, singleLine);
+        Segment segment = segment(key);
+        String preview = null;
+        synchronized (segment) {
+            Entry entry = segment.entries.get(key);
+            for (int i = 0; entry != null && i < PREVIEWS; i++) {
+                if (entry.previews[i] != null && entry.kinds[i] == kind) {
+                    preview = entry.previews[i];
+                    break;
+                }
+            }
+        }
+        count(preview != null);
+        return preview;
+    }
+
+    void putPreview(Object key, int maxLength, boolean singleLine, String preview) {
+        int kind = kind(maxLength, singleLine);
+        Segment segment = segment(key);
+        synchronized (segment) {
+            Entry entry = entry(segment, key, weigh(preview));
+            if (entry == null) {
+                return;
+            }
+            for (int i = 0; i < PREVIEWS; i++) {
+                if (entry.previews[i] != null && entry.kinds[i] == kind) {
+                    return;
+                }
+            }
+            int slot = entry.nextPreview;
+            entry.nextPreview = (slot + 1) % PREVIEWS;
+            if (entry.previews[slot] != null) {
+                add(segment, entry, -weigh(entry.previews[slot]));
+            }
+            entry.kinds[slot] = kind;
+            entry.previews[slot] = preview;
+            add(segment, entry, weigh(preview));
+        }
+    }
+
+    void invalidate(Object key) {
+        Segment segment = segment(key);
+        synchronized (segment) {
+            Entry entry = segment.entries.remove(key);
+            if (entry != null) {
+                segment.weight -= entry.weight;
+            }
+        }
+    }
+
+    // For a note that changed without its body changing
+    void moved(Object from, Object to) {
+        Segment segment = segment(from);
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.entries.remove(from);
+            if (entry == null) {
+                return;
+            }
+            segment.weight -= entry.weight;
+        }
+        segment = segment(to);
+        synchronized (segment) {
+            if (segment.entries.containsKey(to)) {
+                return;
+            }
+            segment.entries.put(to, entry);
+            segment.weight += entry.weight;
+            trim(segment);
+        }
+    }
+
+    void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.entries.clear();
+                segment.weight = 0;
+            }
+        }
+    }
+
+    private Segment segment(Object key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private void count(boolean hit) {
+        if (hit) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+    }
+
+    // Null when the value would take more than the segment's share. Called with the segment locked.
+    private Entry entry(Segment segment, Object key, long valueWeight) {
+        if (segmentEntries == 0 || ENTRY_OVERHEAD + valueWeight > segmentBytes) {
+            return null;
+        }
+        Entry entry = segment.entries.get(key);
+        if (entry == null) {
+            entry = new Entry();
+            segment.entries.put(key, entry);
+            segment.weight += entry.weight;
+        }
+        return entry;
+    }
+
+    // Called with the segment locked
+    private void add(Segment segment, Entry entry, long weight) {
+        entry.weight += weight;
+        segment.weight += weight;
+        if (weight > 0) {
+            trim(segment);
+        }
+    }
+
+    // Called with the segment locked
+    private void trim(Segment segment) {
+        Iterator<Entry> eldest = segment.entries.values().iterator();
+        while ((segment.entries.size() > segmentEntries || segment.weight > segmentBytes) && eldest.hasNext()) {
+            segment.weight -= eldest.next().weight;
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private static int kind(int maxLength, boolean singleLine) {
+        return maxLength << 1 | (singleLine ? 1 : 0);
+    }
+
+    private static long weigh(String value) {
+        return STRING_OVERHEAD + 2L * value.length();
+    }
+}
@@ -0,0 +1,26 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+// Shared thread-safe formatters in the JVM's starting time zone, as SimpleDateFormat used.
+final class NoteDates {
+    static final java.time.format.DateTimeFormatter STORAGE = formatter("yyyy-MM-dd HH:mm:ss");
+    static final java.time.format.DateTimeFormatter LONG = formatter("dd/MM/yyyy HH:mm:ss");
+    static final java.time.format.DateTimeFormatter SHORT = formatter("dd/MM/yyyy HH:mm");
+
+    private NoteDates() {
+    }
+
+    static String format(java.time.format.DateTimeFormatter formatter, long millis) {
+        return formatter.format(java.time.Instant.ofEpochMilli(millis));
+    }
+
+    static long parse(java.time.format.DateTimeFormatter formatter, String text) {
+        return java.time.LocalDateTime.parse(text, formatter).atZone(formatter.getZone()).toInstant().toEpochMilli();
+    }
+
+    private static java.time.format.DateTimeFormatter formatter(String pattern) {
+        return java.time.format.DateTimeFormatter.ofPattern(pattern, Locale.ROOT).withZone(java.time.ZoneId.systemDefault());
+    }
+}
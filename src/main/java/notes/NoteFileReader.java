@@ -0,0 +1,143 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+// Stops at the first torn or corrupt record; isDamaged() tells that apart from a clean end.
+class NoteFileReader implements Closeable {
+    private final java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+    private final DataInputStream in;
+    private long remaining;
+    private byte[] buffer = new byte[4096];
+    private boolean damaged;
+    private int version = NoteFileWriter.VERSION;
+    // Version 1 records have no id in front
+    private int fieldOffset = 8;
+    private long nextId;
+    // By record index, for records sharing an earlier body
+    private final ArrayList<Note> records = new ArrayList<Note>();
+
+    public NoteFileReader(File file) throws IOException {
+        remaining = file.length();
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), NoteFileWriter.BUFFER_SIZE));
+        if (remaining > 0) {
+            try {
+                if (remaining < NoteFileWriter.headerLength(NoteFileWriter.VERSION_WITHOUT_IDS)) {
+                    throw new IOException("Not a notes data file: " + file);
+                }
+                version = checkHeader(in.readInt(), in.readInt());
+                remaining -= 8;
+                if (version != NoteFileWriter.VERSION_WITHOUT_IDS) {
+                    if (remaining < 8) {
+                        throw new IOException("Not a notes data file: " + file);
+                    }
+                    nextId = in.readLong();
+                    remaining -= 8;
+                }
+                fieldOffset = NoteFileWriter.headerLength(version) - 8;
+                NoteMetrics.BYTES_READ.add(NoteFileWriter.headerLength(version));
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+    }
+
+    static int checkHeader(int magic, int version) throws IOException {
+        if (magic != NoteFileWriter.MAGIC) {
+            throw new IOException("Not a notes data file");
+        }
+        if (version != NoteFileWriter.VERSION && version != NoteFileWriter.VERSION_WITHOUT_ENCODING 
+                && version != NoteFileWriter.VERSION_WITHOUT_IDS) {
+            throw new IOException("Unsupported notes file version " + version);
+        }
+        return version;
+    }
+
+    // 0 for version 1 files
+    public long getNextId() { return nextId; }
+
+    // Null at the end of the file or at the first bad record
+    public Note next() throws IOException {
+        if (remaining == 0 || damaged) {
+            return null;
+        }
+        if (remaining < 4) {
+            damaged = true;
+            return null;
+        }
+
+        int length = in.readInt();
+        int minLength = NoteFileWriter.minRecordLength(version);
+        if (length < minLength || length > remaining - 8) {
+            damaged = true;
+            return null;
+        }
+        if (buffer.length < length) {
+            buffer = new byte[Math.max(length, (int) Math.min(Integer.MAX_VALUE - 8, buffer.length * 2L))];
+        }
+        in.readFully(buffer, 0, length);
+        int checksum = in.readInt();
+        remaining -= 4 + length + 4;
+        NoteMetrics.BYTES_READ.add(4 + length + 4);
+
+        crc.reset();
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            crc.update(length >>> shift);
+        }
+        crc.update(buffer, 0, length);
+        int base = fieldOffset;
+        int titleLength = intAt(buffer, base + 16);
+        if ((int) crc.getValue() != checksum || titleLength < 0 || titleLength > length - minLength) {
+            damaged = true;
+            return null;
+        }
+
+        String title = new String(buffer, base + 20, titleLength, java.nio.charset.StandardCharsets.UTF_8);
+        int contentField = base + 20 + titleLength;
+        int bodyStart = contentField + 8;
+        byte encoding = NoteFileWriter.BODY_RAW;
+        if (version == NoteFileWriter.VERSION) {
+            encoding = buffer[bodyStart++];
+        }
+        long createdMillis = longAt(buffer, base);
+        long modifiedMillis = longAt(buffer, base + 8);
+        
+        Note note;
+        if (encoding == NoteFileWriter.BODY_RAW) {
+            String content = new String(buffer, bodyStart, length - bodyStart, java.nio.charset.StandardCharsets.UTF_8);
+            note = new Note(title, content, createdMillis, modifiedMillis);
+        } else if (encoding == NoteFileWriter.BODY_DEFLATE) {
+            CompressedBody content = new CompressedBody(Arrays.copyOfRange(buffer, bodyStart, length), 
+                                                        intAt(buffer, contentField + 4), intAt(buffer, contentField));
+            note = new Note(title, content, createdMillis, modifiedMillis);
+        } else {
+            int record = encoding == NoteFileWriter.BODY_SHARED && length - bodyStart == 4 ? intAt(buffer, bodyStart) : -1;
+            if (record < 0 || record >= records.size()) {
+                damaged = true;
+                return null;
+            }
+            note = records.get(record).withSameBody(title, createdMillis, modifiedMillis);
+        }
+        if (base > 0) {
+            note.id = longAt(buffer, 0);
+        }
+        records.add(note);
+        return note;
+    }
+
+    public boolean isDamaged() { return damaged; }
+
+    public void close() throws IOException {
+        in.close();
+    }
+
+    static int intAt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16)
+             | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+    }
+
+    static long longAt(byte[] bytes, int offset) {
+        return ((long) intAt(bytes, offset) << 32) | (intAt(bytes, offset + 4) & 0xFFFFFFFFL);
+    }
+}
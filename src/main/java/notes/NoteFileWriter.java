@@ -0,0 +1,107 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+// Header: [int magic][int version][long next id], then one record per note:
+// [int length][long id][long created][long modified][int title bytes][title][int content chars][int content bytes]
+// [byte body encoding][body][int crc32]
+// length counts the bytes up to the CRC, which covers them and the length. The body is raw, deflated, or
+// the [int index] of an earlier record with the same body. Version 2 has no encoding byte; version 1 no ids.
+class NoteFileWriter implements Closeable {
+    static final int MAGIC = 0x4E4F5445; // "NOTE"
+    static final int VERSION = 3;
+    static final int VERSION_WITHOUT_ENCODING = 2;
+    static final int VERSION_WITHOUT_IDS = 1;
+    static final int HEADER_LENGTH = 16;
+    static final int MIN_RECORD_LENGTH = 8 + 8 + 8 + 4 + 4 + 4 + 1;
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    static final byte BODY_RAW = 0;
+    static final byte BODY_DEFLATE = 1;
+    static final byte BODY_SHARED = 2;
+
+    private final java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+    private final FileOutputStream fileOut;
+    private final DataOutputStream out;
+    private int count;
+    // {record index, content bytes} per body, by identity since NoteBodyPool shares equal bodies
+    private final IdentityHashMap<Object, int[]> bodyRecords = new IdentityHashMap<Object, int[]>();
+
+    // nextId is written so ids of deleted notes are never reused
+    public NoteFileWriter(File file, long nextId) throws IOException {
+        fileOut = new FileOutputStream(file);
+        out = new DataOutputStream(new java.util.zip.CheckedOutputStream(
+                  new BufferedOutputStream(fileOut, BUFFER_SIZE), crc));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(nextId);
+        NoteMetrics.BYTES_WRITTEN.add(HEADER_LENGTH);
+    }
+    
+    static int headerLength(int version) {
+        return version == VERSION_WITHOUT_IDS ? HEADER_LENGTH - 8 : HEADER_LENGTH;
+    }
+    
+    static int minRecordLength(int version) {
+        if (version == VERSION_WITHOUT_IDS) {
+            return MIN_RECORD_LENGTH - 9;
+        }
+        return version == VERSION_WITHOUT_ENCODING ? MIN_RECORD_LENGTH - 1 : MIN_RECORD_LENGTH;
+    }
+
+    public void write(Note note) throws IOException {
+        byte[] title = note.getTitle().getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        Object body = note.getBody();
+        int[] sharedRecord = NoteBodyPool.isShared(body) ? bodyRecords.get(body) : null;
+        byte encoding;
+        byte[] stored = null;
+        int contentBytes;
+        if (sharedRecord != null) {
+            encoding = BODY_SHARED;
+            contentBytes = sharedRecord[1];
+        } else if (body instanceof CompressedBody) {
+            encoding = BODY_DEFLATE;
+            stored = ((CompressedBody) body).getStoredBytes();
+            contentBytes = ((CompressedBody) body).byteLength;
+        } else {
+            encoding = BODY_RAW;
+            stored = note.getContentBytes();
+            contentBytes = stored.length;
+        }
+        if (sharedRecord == null && NoteBodyPool.isShared(body)) {
+            bodyRecords.put(body, new int[] { count, contentBytes });
+        }
+
+        int length = MIN_RECORD_LENGTH + title.length + (stored != null ? stored.length : 4);
+        crc.reset();
+        out.writeInt(length);
+        out.writeLong(note.id);
+        out.writeLong(note.getCreatedMillis());
+        out.writeLong(note.getModifiedMillis());
+        out.writeInt(title.length);
+        out.write(title);
+        out.writeInt(note.getContentLength());
+        out.writeInt(contentBytes);
+        out.writeByte(encoding);
+        if (stored != null) {
+            out.write(stored);
+        } else {
+            out.writeInt(sharedRecord[0]);
+        }
+        out.writeInt((int) crc.getValue());
+        count++;
+        NoteMetrics.BYTES_WRITTEN.add(4 + length + 4);
+    }
+
+    public int getCount() { return count; }
+
+    public void sync() throws IOException {
+        out.flush();
+        fileOut.getFD().sync();
+    }
+
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,130 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+// Notes by id in fixed-size pages indexed by the id itself, as ids only grow: lookups are two array
+// reads and iteration is in insertion order. Readers never lock; writers synchronize on the table.
+class NoteIdTable implements Iterable<Note> {
+    private static final int PAGE_SHIFT = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+    private static final class Page {
+        final java.util.concurrent.atomic.AtomicReferenceArray<Note> slots = new java.util.concurrent.atomic.AtomicReferenceArray<Note>(PAGE_SIZE);
+        // Guarded by the table
+        int live;
+    }
+
+    // Replaced by a larger copy when an id falls past the end; the pages are shared
+    private volatile java.util.concurrent.atomic.AtomicReferenceArray<Page> pages = new java.util.concurrent.atomic.AtomicReferenceArray<Page>(16);
+    private volatile int size;
+
+    public int size() { return size; }
+
+    public Note get(long id) {
+        java.util.concurrent.atomic.AtomicReferenceArray<Page> directory = pages;
+        long index = id >>> PAGE_SHIFT;
+        if (id <= 0 || index >= directory.length()) {
+            return null;
+        }
+        Page page = directory.get((int) index);
+        return page == null ? null : page.slots.get((int) (id & (PAGE_SIZE - 1)));
+    }
+
+    public synchronized Note put(long id, Note note) {
+        if (id <= 0 || (id >>> PAGE_SHIFT) >= Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Invalid note id " + id);
+        }
+        int index = (int) (id >>> PAGE_SHIFT);
+        java.util.concurrent.atomic.AtomicReferenceArray<Page> directory = pages;
+        if (index >= directory.length()) {
+            java.util.concurrent.atomic.AtomicReferenceArray<Page> grown = new java.util.concurrent.atomic.AtomicReferenceArray<Page>(
+                (int) Math.min(Integer.MAX_VALUE - 8, Math.max(index + 1L, directory.length() * 2L)));
+            for (int i = 0; i < directory.length(); i++) {
+                grown.set(i, directory.get(i));
+            }
+            pages = grown;
+            directory = grown;
+        }
+        Page page = directory.get(index);
+        if (page == null) {
+            page = new Page();
+            directory.set(index, page);
+        }
+        Note previous = page.slots.getAndSet((int) (id & (PAGE_SIZE - 1)), note);
+        if (previous == null) {
+            page.live++;
+            size++;
+        }
+        return previous;
+    }
+
+    public synchronized Note remove(long id) {
+        java.util.concurrent.atomic.AtomicReferenceArray<Page> directory = pages;
+        long index = id >>> PAGE_SHIFT;
+        if (id <= 0 || index >= directory.length()) {
+            return null;
+        }
+        Page page = directory.get((int) index);
+        if (page == null) {
+            return null;
+        }
+        Note previous = page.slots.getAndSet((int) (id & (PAGE_SIZE - 1)), null);
+        if (previous != null) {
+            size--;
+            if (--page.live == 0) {
+                directory.set((int) index, null);
+            }
+        }
+        return previous;
+    }
+
+    public synchronized void clear() {
+        pages = new java.util.concurrent.atomic.AtomicReferenceArray<Page>(16);
+        size = 0;
+    }
+
+    // Weakly consistent, like the concurrent collections
+    public Iterator<Note> iterator() {
+        final java.util.concurrent.atomic.AtomicReferenceArray<Page> directory = pages;
+        return new Iterator<Note>() {
+            private int pageIndex = -1;
+            private Page page;
+            private int slot = PAGE_SIZE;
+            private Note next = advance();
+
+            private Note advance() {
+                while (true) {
+                    while (page != null && slot < PAGE_SIZE) {
+                        Note note = page.slots.get(slot++);
+                        if (note != null) {
+                            return note;
+                        }
+                    }
+                    if (++pageIndex >= directory.length()) {
+                        return null;
+                    }
+                    page = directory.get(pageIndex);
+                    slot = 0;
+                }
+            }
+
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            public Note next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Note note = next;
+                next = advance();
+                return note;
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
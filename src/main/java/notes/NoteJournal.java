@@ -0,0 +1,813 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+class NoteJournal {
+    // Older journals use OP_PUT_WITHOUT_ENCODING and OP_PUT_WITHOUT_ID
+    static final byte OP_PUT = 4;
+    static final byte OP_PUT_WITHOUT_ENCODING = 3;
+    static final byte OP_PUT_WITHOUT_ID = 1;
+    static final byte OP_DELETE = 5;
+    static final byte OP_DELETE_WITHOUT_ID = 2;
+
+    // [int length][payload][long crc32]
+    static final int MAX_RECORD_LENGTH = 256 * 1024 * 1024;
+    private static final int PUT_FIXED_LENGTH = 1 + 4 + 4 + 4 + 4 + 1 + 4 + 8 + 8 + 8;
+    private static final long MIN_COMPACT_BYTES = 1024 * 1024;
+
+    private static class PendingRecord {
+        final byte op;
+        final String key;
+        final long id;
+        final Note source;
+        final Note note;
+        Note before;
+
+        PendingRecord(byte op, String key, long id, Note source, Note note, Note before) {
+            this.op = op;
+            this.key = key;
+            this.id = id;
+            this.source = source;
+            this.note = note;
+            this.before = before;
+        }
+
+        long estimatedBytes() {
+            return 32 + key.length() + (note == null ? 0 : note.getTitle().length() + note.getContentLength());
+        }
+    }
+
+    private final File journalFile;
+    private final File compactingFile;
+    private final File snapshotFile;
+    private final File previousSnapshotFile;
+    private final File previousJournalFile;
+    private final long flushDelayMillis;
+    private final long flushBatchBytes;
+
+    // Lock order: ioLock, then this
+    private final Object ioLock = new Object();
+    private FileOutputStream fileOut;
+    private DataOutputStream out;
+    private final java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+    private volatile long journalBytes;
+    private Thread compactionThread;
+
+    // Guarded by this
+    private ArrayList<PendingRecord> pending = new ArrayList<PendingRecord>();
+    private final HashMap<String, Integer> coalescible = new HashMap<String, Integer>();
+    private long pendingBytes;
+    private long firstPendingNanos;
+    private long appendedCount;
+    private long durableCount;
+    private IOException failure;
+    private long durableBytes;
+    // As (after, through] change ranges
+    private final ArrayList<Loss> losses = new ArrayList<Loss>();
+    private ArrayList<PendingRecord> lost = new ArrayList<PendingRecord>();
+    private volatile boolean hasLostChanges;
+    private int flusherGeneration;
+    private final ThreadLocal<long[]> lastAppended = new ThreadLocal<long[]>() {
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    private static final class Loss {
+        final long after;
+        final long through;
+        final IOException cause;
+
+        Loss(long after, long through, IOException cause) {
+            this.after = after;
+            this.through = through;
+            this.cause = cause;
+        }
+    }
+
+    static final class LostChange {
+        final Note note;
+        final Note before;
+
+        LostChange(Note note, Note before) {
+            this.note = note;
+            this.before = before;
+        }
+    }
+
+    public NoteJournal(File snapshotFile, File journalFile, long flushDelayMillis, long flushBatchBytes) {
+        this.snapshotFile = snapshotFile;
+        this.journalFile = journalFile;
+        this.compactingFile = new File(journalFile.getPath() + ".compacting");
+        this.previousSnapshotFile = new File(snapshotFile.getPath() + ".prev");
+        this.previousJournalFile = new File(journalFile.getPath() + ".prev");
+        this.flushDelayMillis = flushDelayMillis;
+        this.flushBatchBytes = flushBatchBytes;
+    }
+
+    public File getJournalFile() { return journalFile; }
+    public File getPreviousSnapshotFile() { return previousSnapshotFile; }
+
+    public void open() throws IOException {
+        synchronized (ioLock) {
+            synchronized (this) {
+                closeStream();
+                pending.clear();
+                coalescible.clear();
+                pendingBytes = 0;
+                durableCount = appendedCount;
+                failure = null;
+                lost.clear();
+                hasLostChanges = false;
+                openStream();
+                if (flushDelayMillis > 0) {
+                    startFlusher(++flusherGeneration);
+                }
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        synchronized (ioLock) {
+            try {
+                if (out != null) {
+                    writePending();
+                }
+            } finally {
+                synchronized (this) {
+                    flusherGeneration++;
+                    notifyAll();
+                    closeStream();
+                }
+            }
+        }
+    }
+
+    static final class LoadedNotes {
+        final NoteIdTable byId = new NoteIdTable();
+        final HashMap<String, Note> byTitle = new HashMap<String, Note>();
+        final Set<Note> replayed = Collections.newSetFromMap(new IdentityHashMap<Note, Boolean>());
+        private long nextId = 1;
+
+        long getNextId() { return nextId; }
+
+        void reserveIds(long next) {
+            nextId = Math.max(nextId, next);
+        }
+
+        void add(Note note) {
+            if (note.id == 0) {
+                note.id = nextId++;
+            } else {
+                nextId = Math.max(nextId, note.id + 1);
+            }
+            byId.put(note.id, note);
+            byTitle.put(Note.titleKey(note.getTitle()), note);
+        }
+
+        void remove(Note note) {
+            byId.remove(note.id);
+            String key = Note.titleKey(note.getTitle());
+            if (byTitle.get(key) == note) {
+                byTitle.remove(key);
+            }
+        }
+
+        void clear() {
+            byId.clear();
+            byTitle.clear();
+            replayed.clear();
+            nextId = 1;
+        }
+
+        List<Note> list() {
+            ArrayList<Note> notes = new ArrayList<Note>(byId.size());
+            for (Note note : byId) {
+                notes.add(note);
+            }
+            return notes;
+        }
+    }
+
+    public int replay(LoadedNotes notes) throws IOException {
+        int applied = 0;
+        if (compactingFile.exists()) {
+            applied += replayFile(compactingFile, notes);
+        }
+        if (journalFile.exists()) {
+            applied += replayFile(journalFile, notes);
+        }
+        return applied;
+    }
+
+    public int replayPrevious(LoadedNotes notes) throws IOException {
+        return previousJournalFile.exists() ? replayFile(previousJournalFile, notes) : 0;
+    }
+
+    public void setAsideSnapshot() throws IOException {
+        if (snapshotFile.exists()) {
+            java.nio.file.Files.move(snapshotFile.toPath(), new File(snapshotFile.getPath() + ".damaged").toPath(),
+                                     java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    static void checkRecordLength(String key, String title, long bodyBytes) {
+        long length = PUT_FIXED_LENGTH + Note.utf8Length(key) + Note.utf8Length(title) + bodyBytes;
+        if (length > MAX_RECORD_LENGTH) {
+            throw new IllegalArgumentException("Note is too large to save: its content takes " + (bodyBytes >> 20)
+                                               + " MB and a note can take at most " + (MAX_RECORD_LENGTH >> 20) + " MB");
+        }
+    }
+
+    public void appendPut(String key, Note note, Note before) throws IOException {
+        enqueue(new PendingRecord(OP_PUT, key, note.id, note, note.copy(), before));
+    }
+
+    public void appendDelete(String key, Note note) throws IOException {
+        enqueue(new PendingRecord(OP_DELETE, key, note.id, note, null, note.copy()));
+    }
+
+    public void appendPuts(List<Note> notes) throws IOException {
+        List<PendingRecord> records = new ArrayList<PendingRecord>(notes.size());
+        for (Note note : notes) {
+            records.add(new PendingRecord(OP_PUT, note.getTitle(), note.id, note, note.copy(), null));
+        }
+        enqueue(records);
+    }
+
+    // Concurrent callers share one write. Throws if this thread's last change was lost.
+    public void flush() throws IOException {
+        long change = lastAppended.get()[0];
+        boolean written;
+        synchronized (this) {
+            if (out == null) {
+                throw new IOException("Notes journal is not open");
+            }
+            written = durableCount >= appendedCount;
+        }
+        if (!written) {
+            synchronized (ioLock) {
+                try {
+                    writePending();
+                } catch (IOException e) {
+                    // Reported below
+                }
+            }
+        }
+        synchronized (this) {
+            for (Loss loss : losses) {
+                if (change > loss.after && change <= loss.through) {
+                    throw new IOException("Notes journal write failed: " + loss.cause.getMessage(), loss.cause);
+                }
+            }
+        }
+    }
+
+    public boolean hasLostChanges() {
+        return hasLostChanges;
+    }
+
+    // Oldest first; the caller undoes them newest first
+    public synchronized List<LostChange> takeLostChanges() {
+        List<LostChange> changes = new ArrayList<LostChange>(lost.size());
+        for (PendingRecord record : lost) {
+            changes.add(new LostChange(record.source, record.before));
+        }
+        lost = new ArrayList<PendingRecord>();
+        hasLostChanges = false;
+        return changes;
+    }
+
+    // A PUT that keeps its title replaces a pending PUT of the same note
+    private void enqueue(PendingRecord record) throws IOException {
+        enqueue(Collections.singletonList(record));
+    }
+
+    private void enqueue(List<PendingRecord> records) throws IOException {
+        boolean writeNow;
+        synchronized (this) {
+            if (out == null) {
+                throw new IOException("Notes journal is not open");
+            }
+            for (PendingRecord record : records) {
+                queue(record);
+            }
+            if (pendingBytes >= flushBatchBytes) {
+                notifyAll();
+            }
+            writeNow = flushDelayMillis <= 0;
+        }
+        if (writeNow) {
+            flush();
+        }
+    }
+
+    private void queue(PendingRecord record) {
+        appendedCount++;
+        lastAppended.get()[0] = appendedCount;
+        if (hasLostChanges) {
+            lost.add(record);
+            Loss last = losses.remove(losses.size() - 1);
+            losses.add(new Loss(last.after, appendedCount, last.cause));
+            durableCount = appendedCount;
+            return;
+        }
+
+        String key = Note.titleKey(record.key);
+        String titleKey = record.note == null ? key : Note.titleKey(record.note.getTitle());
+        boolean renames = record.op != OP_PUT || !key.equals(titleKey);
+        Integer index = renames ? null : coalescible.get(key);
+
+        if (index != null && pending.get(index).source == record.source) {
+            pendingBytes += record.estimatedBytes() - pending.get(index).estimatedBytes();
+            record.before = pending.get(index).before;
+            pending.set(index, record);
+        } else {
+            coalescible.remove(key);
+            coalescible.remove(titleKey);
+            if (pending.isEmpty()) {
+                firstPendingNanos = System.nanoTime();
+                notifyAll();
+            }
+            pending.add(record);
+            pendingBytes += record.estimatedBytes();
+            if (!renames) {
+                coalescible.put(key, pending.size() - 1);
+            }
+        }
+    }
+
+    // Called with ioLock held
+    private void writePending() throws IOException {
+        List<PendingRecord> batch;
+        long batchEnd;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                durableCount = appendedCount;
+                return;
+            }
+            if (out == null) {
+                throw new IOException("Notes journal is not open");
+            }
+            batch = pending;
+            batchEnd = appendedCount;
+            pending = new ArrayList<PendingRecord>();
+            coalescible.clear();
+            pendingBytes = 0;
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (failure != null) {
+                truncateFailedWrite();
+            }
+            for (PendingRecord record : batch) {
+                writeRecord(record);
+            }
+            out.flush();
+            fileOut.getFD().sync();
+            NoteMetrics.JOURNAL_SYNC.recordSince(start);
+        } catch (IOException e) {
+            synchronized (this) {
+                failure = e;
+                losses.add(new Loss(durableCount, appendedCount, e));
+                lost.addAll(batch);
+                lost.addAll(pending);
+                hasLostChanges = true;
+                pending = new ArrayList<PendingRecord>();
+                coalescible.clear();
+                pendingBytes = 0;
+                durableCount = appendedCount;
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            durableCount = Math.max(durableCount, batchEnd);
+            durableBytes = journalBytes;
+        }
+    }
+
+    private void truncateFailedWrite() throws IOException {
+        synchronized (this) {
+            try {
+                closeStream();
+            } catch (IOException e) {
+                out = null;
+                fileOut = null;
+            }
+            RandomAccessFile file = new RandomAccessFile(journalFile, "rw");
+            try {
+                file.setLength(durableBytes);
+                file.getFD().sync();
+            } finally {
+                file.close();
+            }
+            openStream();
+            failure = null;
+        }
+    }
+
+    private void startFlusher(final int generation) {
+        Thread flusher = new Thread(new Runnable() {
+            public void run() {
+                while (awaitBatch(generation)) {
+                    synchronized (ioLock) {
+                        try {
+                            writePending();
+                        } catch (IOException e) {
+                            // Undone by the store
+                        }
+                    }
+                }
+            }
+        }, "notes-journal-flush");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    private synchronized boolean awaitBatch(int generation) {
+        try {
+            while (generation == flusherGeneration) {
+                if (pending.isEmpty()) {
+                    wait();
+                    continue;
+                }
+                long waitedMillis = (System.nanoTime() - firstPendingNanos) / 1000000;
+                if (pendingBytes >= flushBatchBytes || waitedMillis >= flushDelayMillis) {
+                    return true;
+                }
+                wait(flushDelayMillis - waitedMillis);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private void openStream() throws IOException {
+        journalBytes = journalFile.length();
+        durableBytes = journalBytes;
+        fileOut = new FileOutputStream(journalFile, true);
+        out = new DataOutputStream(new java.util.zip.CheckedOutputStream(new BufferedOutputStream(fileOut), crc));
+    }
+
+    private void closeStream() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+            fileOut = null;
+        }
+    }
+
+    public synchronized boolean needsCompaction() {
+        return compactionThread == null && !compactingFile.exists()
+            && journalBytes >= Math.max(MIN_COMPACT_BYTES, snapshotFile.length() / 2);
+    }
+
+    public void compactInBackground(final List<Note> notesCopy, final long nextId) throws IOException {
+        synchronized (ioLock) {
+            synchronized (this) {
+                if (compactionThread != null || compactingFile.exists()) {
+                    return;
+                }
+            }
+            // Into the rolled segment, so they survive a failed snapshot
+            writePending();
+
+            synchronized (this) {
+                closeStream();
+                if (!journalFile.renameTo(compactingFile)) {
+                    openStream();
+                    throw new IOException("Could not roll journal " + journalFile);
+                }
+                openStream();
+
+                compactionThread = new Thread(new Runnable() {
+                    public void run() {
+                        long start = System.nanoTime();
+                        try {
+                            installSnapshot(writeSnapshotFile(snapshotFile, notesCopy, nextId), compactingFile);
+                        } catch (IOException e) {
+                            System.out.println("Error compacting notes journal: " + e.getMessage());
+                        } finally {
+                            NoteMetrics.COMPACTION.recordSince(start);
+                            synchronized (NoteJournal.this) {
+                                compactionThread = null;
+                            }
+                        }
+                    }
+                }, "notes-compaction");
+                compactionThread.setDaemon(true);
+                compactionThread.start();
+            }
+        }
+    }
+
+    public void checkpoint(List<Note> notes, long nextId) throws IOException {
+        awaitCompaction();
+        synchronized (ioLock) {
+            boolean complete = true;
+            try {
+                writePending();
+            } catch (IOException e) {
+                complete = false;
+            }
+            File tempFile = writeSnapshotFile(snapshotFile, notes, nextId);
+            
+            synchronized (this) {
+                closeStream();
+                File deltas = null;
+                if (complete && compactingFile.exists()) {
+                    appendFile(journalFile, compactingFile);
+                    deltas = compactingFile;
+                } else if (complete) {
+                    deltas = journalFile;
+                }
+                installSnapshot(tempFile, deltas);
+                compactingFile.delete();
+                new FileOutputStream(journalFile).close();
+                syncDirectory(journalFile.getAbsoluteFile().getParentFile());
+                pending.clear();
+                coalescible.clear();
+                pendingBytes = 0;
+                durableCount = appendedCount;
+                failure = null;
+                openStream();
+            }
+        }
+    }
+
+    public void awaitCompaction() {
+        Thread thread;
+        synchronized (this) {
+            thread = compactionThread;
+        }
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void installSnapshot(File tempFile, File deltas) throws IOException {
+        if (deltas != null && snapshotFile.exists()) {
+            move(snapshotFile, previousSnapshotFile);
+            move(tempFile, snapshotFile);
+            move(deltas, previousJournalFile);
+        } else {
+            previousSnapshotFile.delete();
+            previousJournalFile.delete();
+            move(tempFile, snapshotFile);
+            if (deltas != null) {
+                deltas.delete();
+            }
+        }
+        syncDirectory(snapshotFile.getAbsoluteFile().getParentFile());
+    }
+
+    static void writeSnapshot(File target, List<Note> notes) throws IOException {
+        long nextId = 1;
+        for (Note note : notes) {
+            nextId = Math.max(nextId, note.id + 1);
+        }
+        writeSnapshot(target, notes, nextId);
+    }
+
+    static void writeSnapshot(File target, List<Note> notes, long nextId) throws IOException {
+        move(writeSnapshotFile(target, notes, nextId), target);
+        syncDirectory(target.getAbsoluteFile().getParentFile());
+    }
+
+    private static File writeSnapshotFile(File target, List<Note> notes, long nextId) throws IOException {
+        File tempFile = new File(target.getPath() + ".tmp");
+        NoteFileWriter writer = new NoteFileWriter(tempFile, nextId);
+        try {
+            for (Note note : notes) {
+                writer.write(note);
+            }
+            writer.sync();
+        } finally {
+            writer.close();
+        }
+        return tempFile;
+    }
+
+    private static void move(File source, File target) throws IOException {
+        java.nio.file.Files.move(source.toPath(), target.toPath(),
+                                 java.nio.file.StandardCopyOption.REPLACE_EXISTING,
+                                 java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void appendFile(File source, File target) throws IOException {
+        java.nio.channels.FileChannel in = java.nio.channels.FileChannel.open(source.toPath(), java.nio.file.StandardOpenOption.READ);
+        try {
+            java.nio.channels.FileChannel out = java.nio.channels.FileChannel.open(target.toPath(), java.nio.file.StandardOpenOption.WRITE,
+                                                                                   java.nio.file.StandardOpenOption.APPEND);
+            try {
+                long position = 0;
+                while (position < in.size()) {
+                    position += in.transferTo(position, in.size() - position, out);
+                }
+                out.force(false);
+                NoteMetrics.BYTES_READ.add(position);
+                NoteMetrics.BYTES_WRITTEN.add(position);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    // Windows cannot open a directory
+    static void syncDirectory(File directory) {
+        try {
+            java.nio.channels.FileChannel channel = java.nio.channels.FileChannel.open(directory.toPath(), java.nio.file.StandardOpenOption.READ);
+            try {
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        } catch (IOException e) {
+            // Not supported here
+        }
+    }
+
+    private void writeRecord(PendingRecord record) throws IOException {
+        byte[] key = record.key.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        int length = 1 + 4 + key.length;
+        byte[] title = null;
+        byte[] stored = null;
+        byte encoding = NoteFileWriter.BODY_RAW;
+        int contentBytes = 0;
+        if (record.op == OP_PUT) {
+            title = record.note.getTitle().getBytes(java.nio.charset.StandardCharsets.UTF_8);
+            Object body = record.note.getBody();
+            if (body instanceof CompressedBody) {
+                encoding = NoteFileWriter.BODY_DEFLATE;
+                stored = ((CompressedBody) body).getStoredBytes();
+                contentBytes = ((CompressedBody) body).byteLength;
+            } else {
+                stored = record.note.getContentBytes();
+                contentBytes = stored.length;
+            }
+            length = PUT_FIXED_LENGTH + key.length + title.length + stored.length;
+        } else {
+            length += 8;
+        }
+
+        out.writeInt(length);
+        crc.reset();
+        out.writeByte(record.op);
+        writeBytes(out, key);
+        if (record.op == OP_PUT) {
+            writeBytes(out, title);
+            out.writeInt(record.note.getContentLength());
+            out.writeInt(contentBytes);
+            out.writeByte(encoding);
+            writeBytes(out, stored);
+            out.writeLong(record.note.getCreatedMillis());
+            out.writeLong(record.note.getModifiedMillis());
+        }
+        out.writeLong(record.id);
+        out.writeLong(crc.getValue());
+        journalBytes += 4 + length + 8;
+        NoteMetrics.BYTES_WRITTEN.add(4 + length + 8);
+    }
+
+    // A torn tail is cut off; a record that passes its checksum but cannot be read is an error
+    private static int replayFile(File file, LoadedNotes notes) throws IOException {
+        int applied = 0;
+        long validLength = 0;
+        long fileLength = file.length();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+        try {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length <= 0 || length > fileLength - validLength - 4 - 8) {
+                    break;
+                }
+
+                byte[] payload = new byte[length];
+                long checksum;
+                try {
+                    in.readFully(payload);
+                    checksum = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+                crc.update(payload, 0, payload.length);
+                if (crc.getValue() != checksum) {
+                    break;
+                }
+
+                applyRecord(payload, notes);
+                applied++;
+                validLength += 4 + length + 8;
+            }
+        } finally {
+            in.close();
+            NoteMetrics.BYTES_READ.add(validLength);
+        }
+
+        if (validLength < file.length()) {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(validLength);
+            } finally {
+                raf.close();
+            }
+        }
+        return applied;
+    }
+
+    private static void applyRecord(byte[] payload, LoadedNotes notes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte op = in.readByte();
+        String key = Note.titleKey(readString(in));
+
+        if (op == OP_PUT || op == OP_PUT_WITHOUT_ENCODING || op == OP_PUT_WITHOUT_ID) {
+            String title = readString(in);
+            Object body = op == OP_PUT ? readBody(in) : readString(in);
+            long createdMillis = in.readLong();
+            long modifiedMillis = in.readLong();
+            Note note = body instanceof CompressedBody ? new Note(title, (CompressedBody) body, createdMillis, modifiedMillis)
+                                                       : new Note(title, (String) body, createdMillis, modifiedMillis);
+            Note existing;
+            if (op != OP_PUT_WITHOUT_ID) {
+                note.id = in.readLong();
+                existing = notes.byId.get(note.id);
+            } else {
+                existing = notes.byTitle.get(key);
+                if (existing == null) {
+                    existing = notes.byTitle.get(Note.titleKey(title));
+                }
+            }
+
+            // Records are idempotent, so a segment can be replayed over a snapshot that contains it
+            Note holder = notes.byTitle.get(Note.titleKey(title));
+            if (holder != null && holder != existing) {
+                notes.remove(holder);
+            }
+            if (existing != null) {
+                notes.remove(existing);
+                existing.replaceWith(note);
+                notes.add(existing);
+                notes.replayed.add(existing);
+            } else {
+                notes.add(note);
+                notes.replayed.add(note);
+            }
+        } else if (op == OP_DELETE || op == OP_DELETE_WITHOUT_ID) {
+            Note existing = op == OP_DELETE ? notes.byId.get(in.readLong()) : notes.byTitle.get(key);
+            if (existing != null) {
+                notes.remove(existing);
+            }
+        } else {
+            throw new IOException("Unknown notes journal record type " + op);
+        }
+    }
+
+    private static Object readBody(DataInputStream in) throws IOException {
+        int contentLength = in.readInt();
+        int contentBytes = in.readInt();
+        byte encoding = in.readByte();
+        byte[] stored = new byte[in.readInt()];
+        in.readFully(stored);
+        if (encoding == NoteFileWriter.BODY_DEFLATE) {
+            return new CompressedBody(stored, contentBytes, contentLength);
+        } else if (encoding != NoteFileWriter.BODY_RAW) {
+            throw new IOException("Unknown note body encoding " + encoding + " in the notes journal");
+        }
+        return new String(stored, java.nio.charset.StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
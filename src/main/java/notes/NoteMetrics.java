@@ -0,0 +1,234 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+// Process-wide latency histograms, persistence byte counters and cache figures, also published over JMX.
+final class NoteMetrics {
+    static final Timer LOAD = new Timer("load");
+    static final Timer CHECKPOINT = new Timer("checkpoint");
+    static final Timer COMPACTION = new Timer("compaction");
+    static final Timer JOURNAL_SYNC = new Timer("journal-sync");
+    static final Timer CREATE = new Timer("create");
+    static final Timer UPDATE = new Timer("update");
+    static final Timer DELETE = new Timer("delete");
+    static final Timer SEARCH = new Timer("search");
+    static final Timer SUGGEST = new Timer("suggest");
+    static final Timer QUERY = new Timer("query");
+    static final Timer STATISTICS = new Timer("statistics");
+    static final Timer IMPORT = new Timer("import");
+    static final Timer EXPORT = new Timer("export");
+    static final Timer REQUEST = new Timer("http-request");
+    private static final Timer[] TIMERS = {
+        LOAD, CHECKPOINT, COMPACTION, JOURNAL_SYNC, CREATE, UPDATE, DELETE, SEARCH, SUGGEST, QUERY, STATISTICS, IMPORT, EXPORT, REQUEST
+    };
+
+    static final java.util.concurrent.atomic.LongAdder BYTES_READ = new java.util.concurrent.atomic.LongAdder();
+    static final java.util.concurrent.atomic.LongAdder BYTES_WRITTEN = new java.util.concurrent.atomic.LongAdder();
+
+    private static final String DOMAIN = "notes";
+
+    private NoteMetrics() {
+    }
+
+    // Log-linear buckets: exact below 32 ns, then 16 per power of two, so percentiles are within 1/16
+    static final class Timer {
+        private static final int SUB_BUCKET_BITS = 4;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+        private final String name;
+        private final java.util.concurrent.atomic.AtomicLongArray buckets = new java.util.concurrent.atomic.AtomicLongArray(64 * SUB_BUCKETS);
+        private final java.util.concurrent.atomic.LongAdder count = new java.util.concurrent.atomic.LongAdder();
+        private final java.util.concurrent.atomic.LongAdder totalNanos = new java.util.concurrent.atomic.LongAdder();
+        private final java.util.concurrent.atomic.AtomicLong maxNanos = new java.util.concurrent.atomic.AtomicLong();
+
+        Timer(String name) {
+            this.name = name;
+        }
+
+        String getName() { return name; }
+
+        void recordSince(long startNanos) {
+            record(System.nanoTime() - startNanos);
+        }
+
+        void record(long nanos) {
+            nanos = Math.max(0, nanos);
+            buckets.incrementAndGet(bucket(nanos));
+            count.increment();
+            totalNanos.add(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        long getCount() { return count.sum(); }
+
+        long getMaxNanos() { return maxNanos.get(); }
+
+        double getMeanNanos() {
+            long samples = count.sum();
+            return samples == 0 ? 0 : (double) totalNanos.sum() / samples;
+        }
+
+        // Capped at the maximum; 0 before anything was recorded
+        long percentileNanos(double quantile) {
+            long[] counts = new long[buckets.length()];
+            long samples = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+                samples += counts[i];
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * samples));
+            long seen = 0;
+            for (int i = 0; i < counts.length && samples > 0; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), getMaxNanos());
+                }
+            }
+            return 0;
+        }
+
+        private static int bucket(long nanos) {
+            if (nanos < 2 * SUB_BUCKETS) {
+                return (int) nanos;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+            int shift = exponent - SUB_BUCKET_BITS;
+            return (shift + 1) * SUB_BUCKETS + (int) ((nanos >>> shift) & (SUB_BUCKETS - 1));
+        }
+
+        private static long upperBound(int bucket) {
+            if (bucket < 2 * SUB_BUCKETS) {
+                return bucket;
+            }
+            int shift = bucket / SUB_BUCKETS - 1;
+            long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+            return lower + (1L << shift) - 1;
+        }
+    }
+
+    static String report() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-14s %10s %12s %12s %12s %12s%n", "operation", "count", "mean ms", "p50 ms", "p99 ms", "max ms"));
+        for (Timer timer : TIMERS) {
+            report.append(String.format("%-14s %10d %12.3f %12.3f %12.3f %12.3f%n", timer.getName(), timer.getCount(),
+                                        timer.getMeanNanos() / 1e6, timer.percentileNanos(0.5) / 1e6,
+                                        timer.percentileNanos(0.99) / 1e6, timer.getMaxNanos() / 1e6));
+        }
+        report.append(String.format("%nBytes read:    %,d%n", BYTES_READ.sum()));
+        report.append(String.format("Bytes written: %,d%n", BYTES_WRITTEN.sum()));
+        NoteContentCache cache = NoteContentCache.SHARED;
+        report.append(String.format("%nContent cache: %,d hits, %,d misses, %,d evictions, %,d entries, ~%,d bytes%n",
+                                    cache.getHits(), cache.getMisses(), cache.getEvictions(), cache.size(), cache.getWeightBytes()));
+        return report.toString();
+    }
+
+    // Calling it again does nothing
+    static synchronized void register() throws javax.management.JMException {
+        javax.management.MBeanServer server = java.lang.management.ManagementFactory.getPlatformMBeanServer();
+        for (final Timer timer : TIMERS) {
+            register(server, DOMAIN + ":type=Operation,name=" + timer.getName(), new ReadOnlyBean(
+                "Latency of " + timer.getName() + " operations",
+                new String[] { "Count", "MeanMillis", "P50Millis", "P99Millis", "MaxMillis" }) {
+                Object value(String attribute) {
+                    if (attribute.equals("Count")) {
+                        return timer.getCount();
+                    } else if (attribute.equals("MeanMillis")) {
+                        return timer.getMeanNanos() / 1e6;
+                    } else if (attribute.equals("P50Millis")) {
+                        return timer.percentileNanos(0.5) / 1e6;
+                    } else if (attribute.equals("P99Millis")) {
+                        return timer.percentileNanos(0.99) / 1e6;
+                    }
+                    return timer.getMaxNanos() / 1e6;
+                }
+            });
+        }
+        register(server, DOMAIN + ":type=Persistence", new ReadOnlyBean(
+            "Bytes read and written by the notes data file, journal and search index",
+            new String[] { "BytesRead", "BytesWritten" }) {
+            Object value(String attribute) {
+                return attribute.equals("BytesRead") ? BYTES_READ.sum() : BYTES_WRITTEN.sum();
+            }
+        });
+        register(server, DOMAIN + ":type=ContentCache", new ReadOnlyBean(
+            "Decoded note bodies and previews kept in memory",
+            new String[] { "Hits", "Misses", "Evictions", "Entries", "Bytes" }) {
+            Object value(String attribute) {
+                NoteContentCache cache = NoteContentCache.SHARED;
+                if (attribute.equals("Hits")) {
+                    return cache.getHits();
+                } else if (attribute.equals("Misses")) {
+                    return cache.getMisses();
+                } else if (attribute.equals("Evictions")) {
+                    return cache.getEvictions();
+                } else if (attribute.equals("Entries")) {
+                    return (long) cache.size();
+                }
+                return cache.getWeightBytes();
+            }
+        });
+    }
+
+    private static void register(javax.management.MBeanServer server, String name, Object bean) throws javax.management.JMException {
+        javax.management.ObjectName objectName = new javax.management.ObjectName(name);
+        if (!server.isRegistered(objectName)) {
+            server.registerMBean(bean, objectName);
+        }
+    }
+
+    // Dynamic, as JMX only introspects public interfaces
+    private abstract static class ReadOnlyBean implements javax.management.DynamicMBean {
+        private final String description;
+        private final Set<String> attributes;
+
+        ReadOnlyBean(String description, String[] attributes) {
+            this.description = description;
+            this.attributes = new LinkedHashSet<String>(Arrays.asList(attributes));
+        }
+
+        abstract Object value(String attribute);
+
+        public Object getAttribute(String attribute) throws javax.management.AttributeNotFoundException {
+            if (!attributes.contains(attribute)) {
+                throw new javax.management.AttributeNotFoundException(attribute);
+            }
+            return value(attribute);
+        }
+
+        public javax.management.AttributeList getAttributes(String[] names) {
+            javax.management.AttributeList list = new javax.management.AttributeList();
+            for (String name : names) {
+                if (attributes.contains(name)) {
+                    list.add(new javax.management.Attribute(name, value(name)));
+                }
+            }
+            return list;
+        }
+
+        public void setAttribute(javax.management.Attribute attribute) throws javax.management.AttributeNotFoundException {
+            throw new javax.management.AttributeNotFoundException(attribute.getName() + " is read-only");
+        }
+
+        public javax.management.AttributeList setAttributes(javax.management.AttributeList list) {
+            return new javax.management.AttributeList();
+        }
+
+        public Object invoke(String action, Object[] params, String[] signature) throws javax.management.ReflectionException {
+            throw new javax.management.ReflectionException(new NoSuchMethodException(action));
+        }
+
+        public javax.management.MBeanInfo getMBeanInfo() {
+            javax.management.MBeanAttributeInfo[] infos = new javax.management.MBeanAttributeInfo[attributes.size()];
+            int i = 0;
+            for (String attribute : attributes) {
+                String type = value(attribute).getClass().getName();
+                infos[i++] = new javax.management.MBeanAttributeInfo(attribute, type, attribute, true, false, false);
+            }
+            return new javax.management.MBeanInfo(getClass().getName(), description, infos, null, null, null);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+// Fork/join over notes; slices merge left to right, so results equal one sequential pass.
+final class NoteParallel {
+    static final int DEFAULT_THRESHOLD = 10000;
+    // -Dnotes.parallelThreshold=N; 0 splits any pass
+    static final int THRESHOLD = Integer.getInteger("notes.parallelThreshold", DEFAULT_THRESHOLD);
+    private static final int CHUNK = 2048;
+
+    private NoteParallel() {
+    }
+
+    // merge() joins two adjacent slices, the earlier one on the left
+    abstract static class Pass<A> {
+        abstract A accumulate(List<Note> notes, int from, int to);
+
+        abstract A merge(A left, A right);
+    }
+
+    static <A> A run(Collection<Note> notes, Pass<A> pass) {
+        List<Note> list = notes instanceof RandomAccess ? (List<Note>) notes : new ArrayList<Note>(notes);
+        if (list.size() < Math.max(1, THRESHOLD) || java.util.concurrent.ForkJoinPool.getCommonPoolParallelism() < 2) {
+            return pass.accumulate(list, 0, list.size());
+        }
+        return java.util.concurrent.ForkJoinPool.commonPool().invoke(new Split<A>(pass, list, 0, list.size()));
+    }
+
+    private static final class Split<A> extends java.util.concurrent.RecursiveTask<A> {
+        private static final long serialVersionUID = 1L;
+
+        private final Pass<A> pass;
+        private final List<Note> notes;
+        private final int from;
+        private final int to;
+
+        Split(Pass<A> pass, List<Note> notes, int from, int to) {
+            this.pass = pass;
+            this.notes = notes;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected A compute() {
+            if (to - from <= CHUNK) {
+                return pass.accumulate(notes, from, to);
+            }
+            int middle = (from + to) >>> 1;
+            Split<A> left = new Split<A>(pass, notes, from, middle);
+            left.fork();
+            A right = new Split<A>(pass, notes, middle, to).compute();
+            return pass.merge(left.join(), right);
+        }
+    }
+}
@@ -0,0 +1,682 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+// words, "phrases" and prefix* use the index, title: or content: limits them; /regex/ scans; created:,
+// modified:, length: and words: take values, ranges a..b or comparisons; AND, OR, NOT (or -) and ().
+final class NoteQuery {
+    private static final int COST_FIELD = 1;
+    private static final int COST_INDEX = 2;
+    private static final int COST_WORDS = 8;
+    private static final int COST_TITLE_SCAN = 20;
+    private static final int COST_CONTENT_SCAN = 200;
+
+    private static final int CREATED = 1;
+    private static final int MODIFIED = 2;
+    private static final int LENGTH = 3;
+    private static final int WORDS = 4;
+
+    static final int MAX_REGEX_LENGTH = 256;
+    static final long REGEX_TIME_LIMIT_MILLIS = Long.getLong("notes.regexTimeLimit", 2000);
+
+    interface Source {
+        Collection<Note> all();
+
+        Collection<Note> createdBetween(long from, long to);
+
+        Collection<Note> modifiedBetween(long from, long to);
+
+        Set<Note> matching(String query, int field);
+    }
+
+    private static final class Run {
+        final Source source;
+        final HashMap<String, Set<Note>> hits = new HashMap<String, Set<Note>>();
+        final long deadline = System.nanoTime() + REGEX_TIME_LIMIT_MILLIS * 1000000;
+        volatile boolean timedOut;
+
+        Run(Source source) {
+            this.source = source;
+        }
+    }
+
+    private static final class TimedText implements CharSequence {
+        private final CharSequence text;
+        private final long deadline;
+        private int reads;
+
+        TimedText(CharSequence text, long deadline) {
+            this.text = text;
+            this.deadline = deadline;
+        }
+
+        public char charAt(int index) {
+            if ((++reads & 0x3FF) == 0 && System.nanoTime() - deadline > 0) {
+                throw new TimeUp();
+            }
+            return text.charAt(index);
+        }
+
+        public int length() { return text.length(); }
+
+        public CharSequence subSequence(int start, int end) {
+            return new TimedText(text.subSequence(start, end), deadline);
+        }
+
+        public String toString() { return text.toString(); }
+    }
+
+    private static final class TimeUp extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        TimeUp() {
+            super(null, null, false, false);
+        }
+    }
+
+    private abstract static class Node {
+        abstract int cost();
+
+        abstract boolean matches(Note note, Run run);
+
+        // Exactly the notes that match, when the indexes give them; otherwise null
+        Set<Note> hits(Run run) {
+            return null;
+        }
+
+        // A cheap superset of the matches, or null when that would be every note
+        Collection<Note> candidates(Run run) {
+            return hits(run);
+        }
+
+        void collectTerms(List<Term> terms) {
+        }
+    }
+
+    private static final class Term extends Node {
+        final String query;
+        final int field;
+        final String text;
+
+        Term(String query, int field, String text) {
+            this.query = query;
+            this.field = field;
+            this.text = text;
+        }
+
+        String key() {
+            return field + ":" + query;
+        }
+
+        int cost() { return COST_INDEX; }
+
+        boolean matches(Note note, Run run) {
+            return run.hits.get(key()).contains(note);
+        }
+
+        Set<Note> hits(Run run) {
+            return run.hits.get(key());
+        }
+
+        void collectTerms(List<Term> terms) {
+            terms.add(this);
+        }
+
+        public String toString() { return text; }
+    }
+
+    private static final class Regex extends Node {
+        final java.util.regex.Pattern pattern;
+        final int field;
+        final String text;
+
+        Regex(java.util.regex.Pattern pattern, int field, String text) {
+            this.pattern = pattern;
+            this.field = field;
+            this.text = text;
+        }
+
+        int cost() {
+            return field == NoteSearchIndex.FIELD_TITLE ? COST_TITLE_SCAN : COST_CONTENT_SCAN;
+        }
+
+        boolean matches(Note note, Run run) {
+            if (run.timedOut) {
+                return false;
+            }
+            try {
+                if (field != NoteSearchIndex.FIELD_CONTENT && pattern.matcher(new TimedText(note.getTitle(), run.deadline)).find()) {
+                    return true;
+                }
+                return field != NoteSearchIndex.FIELD_TITLE && pattern.matcher(new TimedText(note.getContent(), run.deadline)).find();
+            } catch (TimeUp e) {
+                run.timedOut = true;
+                return false;
+            }
+        }
+
+        public String toString() { return text; }
+    }
+
+    private static final class Range extends Node {
+        final int attribute;
+        final long from;
+        final long to;
+        final String text;
+
+        Range(int attribute, long from, long to, String text) {
+            this.attribute = attribute;
+            this.from = from;
+            this.to = to;
+            this.text = text;
+        }
+
+        int cost() {
+            return attribute == WORDS ? COST_WORDS : COST_FIELD;
+        }
+
+        boolean matches(Note note, Run run) {
+            long value;
+            switch (attribute) {
+                case CREATED:
+                    value = note.getCreatedMillis();
+                    break;
+                case MODIFIED:
+                    value = note.getModifiedMillis();
+                    break;
+                case LENGTH:
+                    value = note.getContentLength();
+                    break;
+                default:
+                    value = note.getWordCount();
+            }
+            return value >= from && value <= to;
+        }
+
+        Collection<Note> candidates(Run run) {
+            if (from > to) {
+                return Collections.<Note>emptyList();
+            }
+            if (attribute == CREATED) {
+                return run.source.createdBetween(from, to);
+            } else if (attribute == MODIFIED) {
+                return run.source.modifiedBetween(from, to);
+            }
+            return null;
+        }
+
+        public String toString() { return text; }
+    }
+
+    private static final class Not extends Node {
+        final Node operand;
+
+        Not(Node operand) {
+            this.operand = operand;
+        }
+
+        int cost() { return operand.cost(); }
+
+        boolean matches(Note note, Run run) {
+            return !operand.matches(note, run);
+        }
+
+        void collectTerms(List<Term> terms) {
+            operand.collectTerms(terms);
+        }
+
+        public String toString() { return "NOT " + operand; }
+    }
+
+    private static final class Combination extends Node {
+        final boolean and;
+        final Node[] operands;
+        final int cost;
+
+        Combination(boolean and, List<Node> operands) {
+            this.and = and;
+            this.operands = operands.toArray(new Node[operands.size()]);
+            Arrays.sort(this.operands, new Comparator<Node>() {
+                public int compare(Node a, Node b) {
+                    return Integer.compare(a.cost(), b.cost());
+                }
+            });
+            int total = 0;
+            for (Node operand : this.operands) {
+                total += operand.cost();
+            }
+            this.cost = total;
+        }
+
+        int cost() { return cost; }
+
+        boolean matches(Note note, Run run) {
+            for (Node operand : operands) {
+                if (operand.matches(note, run) != and) {
+                    return !and;
+                }
+            }
+            return and;
+        }
+
+        Set<Note> hits(Run run) {
+            if (and) {
+                return null;
+            }
+            Set<Note> union = new HashSet<Note>();
+            for (Node operand : operands) {
+                Set<Note> hits = operand.hits(run);
+                if (hits == null) {
+                    return null;
+                }
+                union.addAll(hits);
+            }
+            return union;
+        }
+
+        Collection<Note> candidates(Run run) {
+            if (!and) {
+                Set<Note> union = new HashSet<Note>();
+                for (Node operand : operands) {
+                    Collection<Note> candidates = operand.candidates(run);
+                    if (candidates == null) {
+                        return null;
+                    }
+                    union.addAll(candidates);
+                }
+                return union;
+            }
+            Collection<Note> best = null;
+            for (Node operand : operands) {
+                Set<Note> hits = operand.hits(run);
+                if (hits != null && (!(best instanceof Set) || hits.size() < best.size())) {
+                    best = hits;
+                }
+            }
+            // A date range's size is not known, so index hits are preferred
+            for (int i = 0; best == null && i < operands.length; i++) {
+                best = operands[i].candidates(run);
+            }
+            return best;
+        }
+
+        void collectTerms(List<Term> terms) {
+            for (Node operand : operands) {
+                operand.collectTerms(terms);
+            }
+        }
+
+        public String toString() {
+            StringBuilder text = new StringBuilder("(");
+            for (int i = 0; i < operands.length; i++) {
+                text.append(i > 0 ? (and ? " AND " : " OR ") : "").append(operands[i]);
+            }
+            return text.append(')').toString();
+        }
+    }
+
+    private static final class Filter extends NoteParallel.Pass<List<Note>> {
+        private final Node plan;
+        private final Run run;
+
+        Filter(Node plan, Run run) {
+            this.plan = plan;
+            this.run = run;
+        }
+
+        List<Note> accumulate(List<Note> notes, int from, int to) {
+            ArrayList<Note> matches = new ArrayList<Note>();
+            for (int i = from; i < to; i++) {
+                Note note = notes.get(i);
+                if (plan.matches(note, run)) {
+                    matches.add(note);
+                }
+            }
+            return matches;
+        }
+
+        List<Note> merge(List<Note> left, List<Note> right) {
+            left.addAll(right);
+            return left;
+        }
+    }
+
+    private static final Comparator<Note> BY_MODIFIED_DESCENDING = new Comparator<Note>() {
+        public int compare(Note a, Note b) {
+            int byDate = Long.compare(b.getModifiedMillis(), a.getModifiedMillis());
+            return byDate != 0 ? byDate : Long.compare(b.id, a.id);
+        }
+    };
+
+    private final Node plan;
+    private final String text;
+
+    private NoteQuery(Node plan, String text) {
+        this.plan = plan;
+        this.text = text;
+    }
+
+    static NoteQuery compile(String query) {
+        Parser parser = new Parser(query);
+        Node plan = parser.parseOr();
+        parser.skipSpaces();
+        if (parser.position < query.length()) {
+            throw new IllegalArgumentException("Unexpected '" + query.charAt(parser.position) + "' at position "
+                                               + (parser.position + 1) + " of the query");
+        }
+        return new NoteQuery(plan, query);
+    }
+
+    String getText() { return text; }
+
+    public String toString() {
+        return plan.toString();
+    }
+
+    List<Note> run(Source source) {
+        Run run = new Run(source);
+        List<Term> terms = new ArrayList<Term>();
+        plan.collectTerms(terms);
+        for (Term term : terms) {
+            if (!run.hits.containsKey(term.key())) {
+                run.hits.put(term.key(), source.matching(term.query, term.field));
+            }
+        }
+
+        Collection<Note> candidates = plan.candidates(run);
+        List<Note> notes = new ArrayList<Note>(candidates != null ? candidates : source.all());
+        Filter filter = new Filter(plan, run);
+        List<Note> matches = plan.cost() >= COST_WORDS ? NoteParallel.run(notes, filter) : filter.accumulate(notes, 0, notes.size());
+        if (run.timedOut) {
+            throw new IllegalArgumentException("The regular expression took longer than " + REGEX_TIME_LIMIT_MILLIS
+                                               + " ms and was stopped; try a simpler one or narrow the query");
+        }
+        Collections.sort(matches, BY_MODIFIED_DESCENDING);
+        return matches;
+    }
+
+    private static final class Parser {
+        final String query;
+        int position;
+
+        Parser(String query) {
+            this.query = query;
+        }
+
+        Node parseOr() {
+            List<Node> operands = new ArrayList<Node>();
+            operands.add(parseAnd());
+            while (keyword("OR")) {
+                operands.add(parseAnd());
+            }
+            return operands.size() == 1 ? operands.get(0) : new Combination(false, operands);
+        }
+
+        Node parseAnd() {
+            List<Node> operands = new ArrayList<Node>();
+            while (true) {
+                skipSpaces();
+                if (position >= query.length() || query.charAt(position) == ')' || peekKeyword("OR")) {
+                    break;
+                }
+                if (!keyword("AND")) {
+                    operands.add(parseUnary());
+                }
+            }
+            if (operands.isEmpty()) {
+                throw new IllegalArgumentException(position >= query.length() ? "The query ends where a search term was expected"
+                                                   : "Expected a search term at position " + (position + 1) + " of the query");
+            }
+            operands = mergeRanges(operands);
+            return operands.size() == 1 ? operands.get(0) : new Combination(true, operands);
+        }
+        
+        List<Node> mergeRanges(List<Node> operands) {
+            List<Node> merged = new ArrayList<Node>();
+            for (Node operand : operands) {
+                int earlier = -1;
+                for (int i = 0; operand instanceof Range && i < merged.size(); i++) {
+                    if (merged.get(i) instanceof Range && ((Range) merged.get(i)).attribute == ((Range) operand).attribute) {
+                        earlier = i;
+                    }
+                }
+                if (earlier < 0) {
+                    merged.add(operand);
+                } else {
+                    Range first = (Range) merged.get(earlier);
+                    Range second = (Range) operand;
+                    merged.set(earlier, new Range(first.attribute, Math.max(first.from, second.from), Math.min(first.to, second.to),
+                                                  first.text + " " + second.text));
+                }
+            }
+            return merged;
+        }
+
+        Node parseUnary() {
+            skipSpaces();
+            if (keyword("NOT")) {
+                return new Not(parseOperand("NOT"));
+            }
+            if (query.startsWith("-", position) && position + 1 < query.length()
+                && !Character.isWhitespace(query.charAt(position + 1))) {
+                position++;
+                return new Not(parseOperand("-"));
+            }
+            if (query.startsWith("(", position)) {
+                position++;
+                Node inner = parseOr();
+                skipSpaces();
+                if (!query.startsWith(")", position)) {
+                    throw new IllegalArgumentException("Missing ')' in the query");
+                }
+                position++;
+                return inner;
+            }
+            return parseTerm();
+        }
+
+        Node parseOperand(String operator) {
+            skipSpaces();
+            if (position >= query.length() || query.charAt(position) == ')') {
+                throw new IllegalArgumentException("Nothing follows " + operator + " in the query");
+            }
+            return parseUnary();
+        }
+
+        Node parseTerm() {
+            int start = position;
+            String field = null;
+            int colon = position;
+            while (colon < query.length() && Character.isLetter(query.charAt(colon))) {
+                colon++;
+            }
+            if (colon > position && colon < query.length() && query.charAt(colon) == ':') {
+                field = query.substring(position, colon).toLowerCase(Locale.ROOT);
+                position = colon + 1;
+            }
+
+            if (query.startsWith("/", position)) {
+                return regex(field, start);
+            }
+            String value;
+            boolean quoted = query.startsWith("\"", position);
+            if (quoted) {
+                int end = query.indexOf('"', position + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Missing closing quote in the query");
+                }
+                value = query.substring(position + 1, end);
+                position = end + 1;
+            } else {
+                int end = position;
+                while (end < query.length() && !Character.isWhitespace(query.charAt(end))
+                       && query.charAt(end) != '(' && query.charAt(end) != ')') {
+                    end++;
+                }
+                value = query.substring(position, end);
+                position = end;
+            }
+            String text = query.substring(start, position);
+            if (value.isEmpty()) {
+                throw new IllegalArgumentException("Nothing to search for in '" + text + "'");
+            }
+            if (!quoted && value.indexOf('"') >= 0) {
+                throw new IllegalArgumentException("Unexpected '\"' in '" + text + "'; a quote can only start a phrase, as in \"two words\"");
+            }
+
+            int textField = textField(field);
+            if (textField != 0) {
+                boolean prefix = !quoted && value.length() > 1 && value.endsWith("*");
+                // Keeps words such as OR from being read as operators
+                return new Term(prefix ? value : "\"" + value + "\"", textField, text);
+            }
+            if (quoted) {
+                throw new IllegalArgumentException(field + ": takes a date, a number or a range, not a phrase");
+            }
+            if (field.equals("created")) {
+                return range(CREATED, value, text, true);
+            } else if (field.equals("modified")) {
+                return range(MODIFIED, value, text, true);
+            } else if (field.equals("length")) {
+                return range(LENGTH, value, text, false);
+            } else if (field.equals("words")) {
+                return range(WORDS, value, text, false);
+            }
+            throw new IllegalArgumentException("Unknown field '" + field
+                                               + ":'; use title:, content:, created:, modified:, length: or words:");
+        }
+
+        Node regex(String field, int start) {
+            int end = position + 1;
+            while (end < query.length() && query.charAt(end) != '/') {
+                end += query.charAt(end) == '\\' ? 2 : 1;
+            }
+            if (end >= query.length()) {
+                throw new IllegalArgumentException("Missing closing / of the regular expression");
+            }
+            String expression = query.substring(position + 1, end).replace("\\/", "/");
+            if (expression.length() > MAX_REGEX_LENGTH) {
+                throw new IllegalArgumentException("Regular expressions can be at most " + MAX_REGEX_LENGTH + " characters long");
+            }
+            position = end + 1;
+            int flags = 0;
+            while (position < query.length() && Character.isLetter(query.charAt(position))) {
+                char flag = query.charAt(position++);
+                if (flag == 'i') {
+                    flags |= java.util.regex.Pattern.CASE_INSENSITIVE | java.util.regex.Pattern.UNICODE_CASE;
+                } else if (flag == 'm') {
+                    flags |= java.util.regex.Pattern.MULTILINE;
+                } else if (flag == 's') {
+                    flags |= java.util.regex.Pattern.DOTALL;
+                } else {
+                    throw new IllegalArgumentException("Unknown regular expression flag '" + flag + "'; use i, m or s");
+                }
+            }
+            int textField = textField(field);
+            if (textField == 0) {
+                throw new IllegalArgumentException("Regular expressions only apply to title: and content:");
+            }
+            try {
+                return new Regex(java.util.regex.Pattern.compile(expression, flags), textField, query.substring(start, position));
+            } catch (java.util.regex.PatternSyntaxException e) {
+                throw new IllegalArgumentException("Invalid regular expression: " + e.getDescription());
+            }
+        }
+
+        int textField(String field) {
+            if (field == null) {
+                return NoteSearchIndex.FIELD_ALL;
+            } else if (field.equals("title")) {
+                return NoteSearchIndex.FIELD_TITLE;
+            } else if (field.equals("content")) {
+                return NoteSearchIndex.FIELD_CONTENT;
+            }
+            return 0;
+        }
+
+        Node range(int attribute, String value, String text, boolean dates) {
+            long from = Long.MIN_VALUE;
+            long to = Long.MAX_VALUE;
+            int dots = value.indexOf("..");
+            if (dots >= 0) {
+                if (dots > 0) {
+                    from = bound(value.substring(0, dots), dates, false, text);
+                }
+                if (dots + 2 < value.length()) {
+                    to = bound(value.substring(dots + 2), dates, true, text);
+                }
+            } else if (value.startsWith(">=")) {
+                from = bound(value.substring(2), dates, false, text);
+            } else if (value.startsWith("<=")) {
+                to = bound(value.substring(2), dates, true, text);
+            } else if (value.startsWith(">")) {
+                from = bound(value.substring(1), dates, true, text);
+                if (from == Long.MAX_VALUE) {
+                    to = Long.MIN_VALUE;
+                } else {
+                    from++;
+                }
+            } else if (value.startsWith("<")) {
+                to = bound(value.substring(1), dates, false, text);
+                if (to == Long.MIN_VALUE) {
+                    from = Long.MAX_VALUE;
+                } else {
+                    to--;
+                }
+            } else {
+                String exact = value.startsWith("=") ? value.substring(1) : value;
+                from = bound(exact, dates, false, text);
+                to = bound(exact, dates, true, text);
+            }
+            return new Range(attribute, from, to, text);
+        }
+
+        long bound(String value, boolean dates, boolean end, String text) {
+            if (!dates) {
+                try {
+                    return Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Expected a number in '" + text + "'");
+                }
+            }
+            try {
+                String[] parts = value.split("-", -1);
+                if (parts.length > 3 || parts[0].length() != 4) {
+                    throw new NumberFormatException();
+                }
+                java.time.LocalDate start = java.time.LocalDate.of(Integer.parseInt(parts[0]),
+                                                                   parts.length > 1 ? Integer.parseInt(parts[1]) : 1,
+                                                                   parts.length > 2 ? Integer.parseInt(parts[2]) : 1);
+                if (end) {
+                    start = parts.length == 1 ? start.plusYears(1) : parts.length == 2 ? start.plusMonths(1) : start.plusDays(1);
+                }
+                long millis = start.atStartOfDay(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli();
+                return end ? millis - 1 : millis;
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Expected a date (yyyy, yyyy-MM or yyyy-MM-dd) in '" + text + "'");
+            }
+        }
+
+        boolean keyword(String word) {
+            skipSpaces();
+            if (!peekKeyword(word)) {
+                return false;
+            }
+            position += word.length();
+            return true;
+        }
+
+        boolean peekKeyword(String word) {
+            int end = position + word.length();
+            return query.startsWith(word, position)
+                   && (end == query.length() || Character.isWhitespace(query.charAt(end)) || query.charAt(end) == '(' || query.charAt(end) == ')');
+        }
+
+        void skipSpaces() {
+            while (position < query.length() && Character.isWhitespace(query.charAt(position))) {
+                position++;
+            }
+        }
+    }
+}
@@ -0,0 +1,1025 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+class NoteSearchIndex {
+    static final int FIELD_TITLE = 1;
+    static final int FIELD_CONTENT = 2;
+    static final int FIELD_ALL = 3;
+
+    private static final int INDEX_MAGIC = 0x4E494458; // "NIDX"
+    // An older version is rebuilt from the notes
+    private static final int INDEX_VERSION = 3;
+    private static final int HEADER_LENGTH = 20;
+    private static final int FOOTER_LENGTH = 2 * 20 + 4;
+
+    private final FieldIndex titleIndex = new FieldIndex();
+    private final FieldIndex contentIndex = new FieldIndex();
+    private int noteCount;
+    private StoredIndex stored;
+    private long changes;
+    private final java.util.concurrent.locks.ReentrantReadWriteLock lock = new java.util.concurrent.locks.ReentrantReadWriteLock();
+
+    // Term -> (note -> frequency) for one field. Positions are varints per term: run length, then gaps.
+    // A change copies the terms and notes it touches out of the stored field into the maps.
+    private static class FieldIndex {
+        final TreeMap<String, Posting> postings = new TreeMap<String, Posting>();
+        final IdentityHashMap<Note, String[]> termsByNote = new IdentityHashMap<Note, String[]>();
+        final IdentityHashMap<Note, byte[]> positionsByNote = new IdentityHashMap<Note, byte[]>();
+        StoredField stored;
+        final HashSet<String> loadedTerms = new HashSet<String>();
+
+        void add(Note note, HashMap<String, Occurrences> occurrences) {
+            String[] terms = occurrences.keySet().toArray(new String[occurrences.size()]);
+            Arrays.sort(terms);
+            Occurrences runs = new Occurrences();
+            for (int i = 0; i < terms.length; i++) {
+                Occurrences term = occurrences.get(terms[i]);
+                terms[i] = addPosting(terms[i], note, term.frequency);
+                runs.append(term);
+            }
+            termsByNote.put(note, terms);
+            positionsByNote.put(note, Arrays.copyOf(runs.positions, runs.length));
+        }
+
+        // One String per term, shared by every note
+        String addPosting(String term, Note note, int frequency) {
+            load(term);
+            Map.Entry<String, Posting> existing = postings.ceilingEntry(term);
+            Posting posting;
+            if (existing != null && existing.getKey().equals(term)) {
+                term = existing.getKey();
+                posting = existing.getValue();
+            } else {
+                posting = new Posting();
+                postings.put(term, posting);
+            }
+            posting.put(note, frequency);
+            return term;
+        }
+
+        private void load(String term) {
+            if (stored != null && loadedTerms.add(term)) {
+                Posting posting = stored.posting(term);
+                if (posting != null) {
+                    postings.put(term, posting);
+                }
+            }
+        }
+
+        Posting posting(String term) {
+            return stored == null || loadedTerms.contains(term) ? postings.get(term) : stored.posting(term);
+        }
+
+        Collection<Posting> postingsWithPrefix(String prefix) {
+            Collection<Posting> copied = postings.subMap(prefix, prefix + Character.MAX_VALUE).values();
+            if (stored == null) {
+                return copied;
+            }
+            List<Posting> all = new ArrayList<Posting>(copied);
+            stored.addPostingsWithPrefix(prefix, loadedTerms, all);
+            return all;
+        }
+
+        String[] terms(Note note) {
+            String[] terms = termsByNote.get(note);
+            return terms != null || stored == null ? terms : stored.terms(note);
+        }
+
+        boolean contains(Note note) {
+            return termsByNote.containsKey(note) || (stored != null && stored.index.ordinal(note) >= 0);
+        }
+
+        int[] positions(String term, boolean prefix, Note note) {
+            String[] terms = termsByNote.get(note);
+            if (terms == null) {
+                return stored == null ? null : stored.positions(term, prefix, note);
+            }
+            boolean[] matches = new boolean[terms.length];
+            for (int i = 0; i < terms.length; i++) {
+                matches[i] = prefix ? terms[i].startsWith(term) : terms[i].equals(term);
+            }
+            return collect(positionsByNote.get(note), matches, prefix);
+        }
+
+        static int[] collect(byte[] encoded, boolean[] matches, boolean sort) {
+            int[] positions = new int[8];
+            int count = 0;
+            int[] cursor = new int[1];
+            for (int i = 0; i < matches.length; i++) {
+                int end = readVarint(encoded, cursor);
+                end += cursor[0];
+                if (!matches[i]) {
+                    cursor[0] = end;
+                    continue;
+                }
+                int position = 0;
+                while (cursor[0] < end) {
+                    if (count == positions.length) {
+                        positions = Arrays.copyOf(positions, count * 2);
+                    }
+                    position += readVarint(encoded, cursor);
+                    positions[count++] = position;
+                }
+            }
+            if (count == 0) {
+                return null;
+            }
+            positions = Arrays.copyOf(positions, count);
+            if (sort) {
+                Arrays.sort(positions);
+            }
+            return positions;
+        }
+
+        private static int readVarint(byte[] bytes, int[] cursor) {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = bytes[cursor[0]++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+
+        void remove(Note note) {
+            String[] terms = terms(note);
+            termsByNote.remove(note);
+            positionsByNote.remove(note);
+            if (terms == null) {
+                return;
+            }
+            for (String term : terms) {
+                load(term);
+                Posting posting = postings.get(term);
+                if (posting != null) {
+                    posting.remove(note);
+                    if (posting.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+        }
+
+        void clear() {
+            postings.clear();
+            termsByNote.clear();
+            positionsByNote.clear();
+            loadedTerms.clear();
+            stored = null;
+        }
+    }
+
+    // A changed or removed note is dropped from here
+    private static final class StoredIndex {
+        final MappedNoteFile file;
+        final Note[] notes;
+        final long[] ids;
+        StoredField title;
+        StoredField content;
+
+        StoredIndex(MappedNoteFile file, Note[] notes, long[] ids) {
+            this.file = file;
+            this.notes = notes;
+            this.ids = ids;
+        }
+
+        int ordinal(Note note) {
+            int ordinal = Arrays.binarySearch(ids, note.id);
+            return ordinal >= 0 && notes[ordinal] == note ? ordinal : -1;
+        }
+
+        void drop(Note note) {
+            int ordinal = ordinal(note);
+            if (ordinal >= 0) {
+                notes[ordinal] = null;
+            }
+        }
+    }
+
+    private static final class StoredField {
+        final StoredIndex index;
+        final int termCount;
+        final long termDirectory;
+        final long noteDirectory;
+
+        StoredField(StoredIndex index, int termCount, long termDirectory, long noteDirectory) {
+            this.index = index;
+            this.termCount = termCount;
+            this.termDirectory = termDirectory;
+            this.noteDirectory = noteDirectory;
+        }
+
+        String term(int ordinal) {
+            long offset = index.file.longAt(termDirectory + 8L * ordinal);
+            return index.file.decode(offset + 4, index.file.intAt(offset));
+        }
+
+        int find(String term) {
+            int low = 0;
+            int high = termCount;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (term(middle).compareTo(term) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        Posting posting(String term) {
+            int ordinal = find(term);
+            return ordinal < termCount && term(ordinal).equals(term) ? postingAt(ordinal) : null;
+        }
+
+        Posting postingAt(int ordinal) {
+            long offset = index.file.longAt(termDirectory + 8L * ordinal);
+            offset += 4 + index.file.intAt(offset);
+            int count = index.file.intAt(offset);
+            java.nio.ByteBuffer pairs = java.nio.ByteBuffer.wrap(index.file.copy(offset + 4, 8 * count));
+            Posting posting = new Posting();
+            for (int i = 0; i < count; i++) {
+                Note note = index.notes[pairs.getInt()];
+                int frequency = pairs.getInt();
+                if (note != null) {
+                    posting.put(note, frequency);
+                }
+            }
+            return posting;
+        }
+
+        void addPostingsWithPrefix(String prefix, Set<String> skipped, List<Posting> postings) {
+            for (int ordinal = find(prefix); ordinal < termCount; ordinal++) {
+                String term = term(ordinal);
+                if (!term.startsWith(prefix)) {
+                    break;
+                }
+                if (!skipped.contains(term)) {
+                    postings.add(postingAt(ordinal));
+                }
+            }
+        }
+
+        int[] noteTerms(int note) {
+            long offset = index.file.longAt(noteDirectory + 8L * note);
+            int count = index.file.intAt(offset);
+            java.nio.ByteBuffer ordinals = java.nio.ByteBuffer.wrap(index.file.copy(offset + 4, 4 * count));
+            int[] terms = new int[count];
+            for (int i = 0; i < count; i++) {
+                terms[i] = ordinals.getInt();
+            }
+            return terms;
+        }
+
+        byte[] notePositions(int note) {
+            long offset = index.file.longAt(noteDirectory + 8L * note);
+            offset += 4 + 4L * index.file.intAt(offset);
+            return index.file.copy(offset + 4, index.file.intAt(offset));
+        }
+
+        String[] terms(Note note) {
+            int ordinal = index.ordinal(note);
+            if (ordinal < 0) {
+                return null;
+            }
+            int[] ordinals = noteTerms(ordinal);
+            String[] terms = new String[ordinals.length];
+            for (int i = 0; i < ordinals.length; i++) {
+                terms[i] = term(ordinals[i]);
+            }
+            return terms;
+        }
+
+        int[] positions(String term, boolean prefix, Note note) {
+            int ordinal = index.ordinal(note);
+            if (ordinal < 0) {
+                return null;
+            }
+            int from = find(term);
+            int to = from;
+            if (prefix) {
+                while (to < termCount && term(to).startsWith(term)) {
+                    to++;
+                }
+            } else if (from < termCount && term(from).equals(term)) {
+                to = from + 1;
+            }
+            if (from == to) {
+                return null;
+            }
+            int[] terms = noteTerms(ordinal);
+            boolean[] matches = new boolean[terms.length];
+            for (int i = 0; i < terms.length; i++) {
+                matches[i] = terms[i] >= from && terms[i] < to;
+            }
+            return FieldIndex.collect(notePositions(ordinal), matches, prefix);
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+            count += length;
+        }
+    }
+
+    // Hashed by identity: 8 to 16 bytes a note instead of ~45 for a HashMap entry
+    static final class Posting {
+        private Note[] notes = new Note[2];
+        private int[] frequencies = new int[2];
+        private int size;
+
+        int size() { return size; }
+
+        boolean isEmpty() { return size == 0; }
+
+        int get(Note note) {
+            int mask = notes.length - 1;
+            for (int slot = slot(note, mask); notes[slot] != null; slot = (slot + 1) & mask) {
+                if (notes[slot] == note) {
+                    return frequencies[slot];
+                }
+            }
+            return 0;
+        }
+
+        void put(Note note, int frequency) {
+            if ((size + 1) * 4 > notes.length * 3) {
+                resize(notes.length * 2);
+            }
+            int mask = notes.length - 1;
+            int slot = slot(note, mask);
+            while (notes[slot] != null && notes[slot] != note) {
+                slot = (slot + 1) & mask;
+            }
+            if (notes[slot] == null) {
+                notes[slot] = note;
+                size++;
+            }
+            frequencies[slot] = frequency;
+        }
+
+        void remove(Note note) {
+            int mask = notes.length - 1;
+            int slot = slot(note, mask);
+            while (notes[slot] != note) {
+                if (notes[slot] == null) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            int next = slot;
+            while (true) {
+                next = (next + 1) & mask;
+                Note moved = notes[next];
+                if (moved == null) {
+                    break;
+                }
+                int home = slot(moved, mask);
+                if (((next - home) & mask) >= ((next - slot) & mask)) {
+                    notes[slot] = moved;
+                    frequencies[slot] = frequencies[next];
+                    slot = next;
+                }
+            }
+            notes[slot] = null;
+            frequencies[slot] = 0;
+            size--;
+            if (notes.length > 2 && size * 8 <= notes.length) {
+                resize(notes.length / 2);
+            }
+        }
+
+        int capacity() { return notes.length; }
+
+        Note noteAt(int slot) { return notes[slot]; }
+
+        int frequencyAt(int slot) { return frequencies[slot]; }
+
+        private void resize(int capacity) {
+            Note[] oldNotes = notes;
+            int[] oldFrequencies = frequencies;
+            notes = new Note[capacity];
+            frequencies = new int[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldNotes.length; i++) {
+                if (oldNotes[i] != null) {
+                    int slot = slot(oldNotes[i], mask);
+                    while (notes[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    notes[slot] = oldNotes[i];
+                    frequencies[slot] = oldFrequencies[i];
+                }
+            }
+        }
+
+        private static int slot(Note note, int mask) {
+            int hash = System.identityHashCode(note);
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+    }
+
+    static final class Occurrences {
+        int frequency;
+        byte[] positions = new byte[4];
+        int length;
+        private int last;
+
+        void add(int position) {
+            writeVarint(position - last);
+            last = position;
+            frequency++;
+        }
+
+        void append(Occurrences term) {
+            writeVarint(term.length);
+            ensureCapacity(term.length);
+            System.arraycopy(term.positions, 0, positions, length, term.length);
+            length += term.length;
+        }
+
+        private void writeVarint(int value) {
+            ensureCapacity(5);
+            while (value >= 0x80) {
+                positions[length++] = (byte) (value | 0x80);
+                value >>>= 7;
+            }
+            positions[length++] = (byte) value;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(positions.length * 2, length + extra));
+            }
+        }
+    }
+
+    private static class Clause {
+        final List<String> terms;
+        final boolean phrase;
+        final boolean prefix;
+
+        Clause(List<String> terms, boolean phrase, boolean prefix) {
+            this.terms = terms;
+            this.phrase = phrase;
+            this.prefix = prefix;
+        }
+    }
+
+    public void add(Note note) {
+        HashMap<String, Occurrences> titleTerms = termOccurrences(note.getTitle());
+        HashMap<String, Occurrences> contentTerms = termOccurrences(note.getContent());
+        lock.writeLock().lock();
+        try {
+            addTerms(note, titleTerms, contentTerms);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Note note) {
+        lock.writeLock().lock();
+        try {
+            removeTerms(note);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void update(Note note) {
+        HashMap<String, Occurrences> titleTerms = termOccurrences(note.getTitle());
+        HashMap<String, Occurrences> contentTerms = termOccurrences(note.getContent());
+        lock.writeLock().lock();
+        try {
+            removeTerms(note);
+            addTerms(note, titleTerms, contentTerms);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void rebuild(List<Note> notes) {
+        lock.writeLock().lock();
+        try {
+            clearTerms();
+            for (Note note : notes) {
+                addTerms(note, termOccurrences(note.getTitle()), termOccurrences(note.readContent()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            clearTerms();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addTerms(Note note, HashMap<String, Occurrences> titleTerms, HashMap<String, Occurrences> contentTerms) {
+        titleIndex.add(note, titleTerms);
+        contentIndex.add(note, contentTerms);
+        noteCount++;
+        changes++;
+    }
+
+    private void removeTerms(Note note) {
+        if (titleIndex.contains(note)) {
+            noteCount--;
+        }
+        titleIndex.remove(note);
+        contentIndex.remove(note);
+        if (stored != null) {
+            stored.drop(note);
+        }
+        changes++;
+    }
+
+    private void clearTerms() {
+        titleIndex.clear();
+        contentIndex.clear();
+        stored = null;
+        noteCount = 0;
+        changes++;
+    }
+
+    private static HashMap<String, Occurrences> termOccurrences(String text) {
+        HashMap<String, Occurrences> occurrences = new HashMap<String, Occurrences>();
+        List<String> tokens = tokenize(text);
+        for (int position = 0; position < tokens.size(); position++) {
+            Occurrences term = occurrences.get(tokens.get(position));
+            if (term == null) {
+                term = new Occurrences();
+                occurrences.put(tokens.get(position), term);
+            }
+            term.add(position);
+        }
+        return occurrences;
+    }
+
+    // Words are ANDed, "OR" separates alternatives, "quoted text" is a phrase and word* a prefix
+    public List<Note> search(String query, int field) {
+        List<List<Clause>> groups = parseQuery(query);
+        final HashMap<Note, Double> scores = new HashMap<Note, Double>();
+
+        lock.readLock().lock();
+        try {
+            searchGroups(groups, field, scores);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        ArrayList<Note> results = new ArrayList<Note>(scores.keySet());
+        Collections.sort(results, new Comparator<Note>() {
+            public int compare(Note a, Note b) {
+                int byScore = Double.compare(scores.get(b), scores.get(a));
+                return byScore != 0 ? byScore : a.getTitle().compareToIgnoreCase(b.getTitle());
+            }
+        });
+        return results;
+    }
+
+    public Set<Note> matching(String query, int field) {
+        List<List<Clause>> groups = parseQuery(query);
+        HashMap<Note, Double> scores = new HashMap<Note, Double>();
+        lock.readLock().lock();
+        try {
+            searchGroups(groups, field, scores);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return scores.keySet();
+    }
+
+    private void searchGroups(List<List<Clause>> groups, int field, HashMap<Note, Double> scores) {
+        for (List<Clause> group : groups) {
+            HashMap<Note, Double> groupScores = null;
+            for (Clause clause : group) {
+                HashMap<Note, Double> clauseScores = new HashMap<Note, Double>();
+                if (field == FIELD_TITLE || field == FIELD_ALL) {
+                    matchClause(titleIndex, clause, groupScores, clauseScores);
+                }
+                if (field == FIELD_CONTENT || field == FIELD_ALL) {
+                    matchClause(contentIndex, clause, groupScores, clauseScores);
+                }
+                groupScores = clauseScores;
+                if (groupScores.isEmpty()) {
+                    break;
+                }
+            }
+            if (groupScores != null) {
+                for (Map.Entry<Note, Double> entry : groupScores.entrySet()) {
+                    Double score = scores.get(entry.getKey());
+                    scores.put(entry.getKey(), score == null ? entry.getValue() : score + entry.getValue());
+                }
+            }
+        }
+    }
+
+    private void matchClause(FieldIndex index, Clause clause,
+                             HashMap<Note, Double> candidates, HashMap<Note, Double> clauseScores) {
+        HashMap<Note, Double> matches = null;
+
+        for (int i = 0; i < clause.terms.size(); i++) {
+            String term = clause.terms.get(i);
+            HashMap<Note, Double> termMatches = new HashMap<Note, Double>();
+            Collection<Posting> postings;
+            if (clause.prefix && i == clause.terms.size() - 1) {
+                postings = index.postingsWithPrefix(term);
+            } else {
+                Posting posting = index.posting(term);
+                postings = posting == null ? Collections.<Posting>emptyList() : Collections.singletonList(posting);
+            }
+
+            for (Posting posting : postings) {
+                double idf = Math.log(1.0 + (double) noteCount / posting.size());
+                if (candidates != null && candidates.size() < posting.size()) {
+                    for (Note note : candidates.keySet()) {
+                        addTermScore(note, posting.get(note), idf, candidates, matches, termMatches);
+                    }
+                } else {
+                    for (int slot = 0; slot < posting.capacity(); slot++) {
+                        Note note = posting.noteAt(slot);
+                        if (note != null) {
+                            addTermScore(note, posting.frequencyAt(slot), idf, candidates, matches, termMatches);
+                        }
+                    }
+                }
+            }
+
+            if (matches != null) {
+                for (Map.Entry<Note, Double> entry : termMatches.entrySet()) {
+                    entry.setValue(entry.getValue() + matches.get(entry.getKey()));
+                }
+            }
+            matches = termMatches;
+            if (matches.isEmpty()) {
+                return;
+            }
+        }
+
+        for (Map.Entry<Note, Double> entry : matches.entrySet()) {
+            Note note = entry.getKey();
+            if (clause.phrase && !containsPhrase(index, note, clause.terms, clause.prefix)) {
+                continue;
+            }
+            double score = entry.getValue() + (candidates != null ? candidates.get(note) : 0.0);
+            Double existing = clauseScores.get(note);
+            clauseScores.put(note, existing == null ? score : Math.max(existing, score));
+        }
+    }
+
+    private static void addTermScore(Note note, int frequency, double idf, HashMap<Note, Double> candidates,
+                                     HashMap<Note, Double> matches, HashMap<Note, Double> termMatches) {
+        if (frequency == 0 || (candidates != null && !candidates.containsKey(note))) {
+            return;
+        }
+        if (matches != null && !matches.containsKey(note)) {
+            return;
+        }
+        Double score = termMatches.get(note);
+        termMatches.put(note, (score == null ? 0.0 : score) + frequency * idf);
+    }
+
+    private static boolean containsPhrase(FieldIndex index, Note note, List<String> phrase, boolean prefix) {
+        int[][] positions = new int[phrase.size()][];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = index.positions(phrase.get(i), prefix && i == positions.length - 1, note);
+            if (positions[i] == null) {
+                return false;
+            }
+        }
+        for (int start : positions[0]) {
+            int matched = 1;
+            while (matched < positions.length && Arrays.binarySearch(positions[matched], start + matched) >= 0) {
+                matched++;
+            }
+            if (matched == positions.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<List<Clause>> parseQuery(String query) {
+        List<List<Clause>> groups = new ArrayList<List<Clause>>();
+        List<Clause> group = new ArrayList<Clause>();
+        int i = 0;
+
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"') {
+                int end = query.indexOf('"', i + 1);
+                if (end < 0) {
+                    end = query.length();
+                }
+                List<String> terms = tokenize(query.substring(i + 1, end));
+                if (!terms.isEmpty()) {
+                    group.add(new Clause(terms, terms.size() > 1, false));
+                }
+                i = end + 1;
+            } else {
+                int end = i;
+                while (end < query.length() && !Character.isWhitespace(query.charAt(end)) && query.charAt(end) != '"') {
+                    end++;
+                }
+                String word = query.substring(i, end);
+                i = end;
+
+                if (word.equals("OR")) {
+                    if (!group.isEmpty()) {
+                        groups.add(group);
+                        group = new ArrayList<Clause>();
+                    }
+                    continue;
+                }
+                if (word.equals("AND")) {
+                    continue;
+                }
+
+                boolean prefix = word.endsWith("*");
+                List<String> terms = tokenize(word);
+                if (terms.size() == 1) {
+                    group.add(new Clause(terms, false, prefix));
+                } else if (!terms.isEmpty()) {
+                    // "don't" or "e-mail" must still appear together
+                    group.add(new Clause(terms, true, prefix));
+                }
+            }
+        }
+        if (!group.isEmpty()) {
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<String>();
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                token.append(Character.toLowerCase(c));
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        if (token.length() > 0) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+
+    static long fingerprint(List<Note> notes) {
+        java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+        for (Note note : notes) {
+            byte[] title = note.getTitle().getBytes(java.nio.charset.StandardCharsets.UTF_8);
+            crc.update(title, 0, title.length);
+            long modified = note.getModifiedMillis();
+            int length = note.getContentLength();
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                crc.update((int) (modified >>> shift));
+            }
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                crc.update(length >>> shift);
+            }
+        }
+        return ((long) notes.size() << 32) ^ crc.getValue();
+    }
+
+    public void save(File file, List<Note> notes) throws IOException {
+        HashMap<Note, Integer> ordinals = new HashMap<Note, Integer>();
+        for (int i = 0; i < notes.size(); i++) {
+            ordinals.put(notes.get(i), i);
+        }
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        CountingOutputStream counter = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        DataOutputStream out = new DataOutputStream(counter);
+        long savedChanges;
+        try {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeInt(notes.size());
+            out.writeLong(fingerprint(notes));
+            lock.readLock().lock();
+            try {
+                savedChanges = changes;
+                long[] title = writeField(out, counter, titleIndex, notes, ordinals);
+                long[] content = writeField(out, counter, contentIndex, notes, ordinals);
+                for (long[] footer : new long[][] { title, content }) {
+                    out.writeInt((int) footer[0]);
+                    out.writeLong(footer[1]);
+                    out.writeLong(footer[2]);
+                }
+                out.writeInt(INDEX_MAGIC);
+            } finally {
+                lock.readLock().unlock();
+            }
+        } finally {
+            out.close();
+        }
+        NoteMetrics.BYTES_WRITTEN.add(tempFile.length());
+        java.nio.file.Files.move(tempFile.toPath(), file.toPath(),
+                                 java.nio.file.StandardCopyOption.REPLACE_EXISTING,
+                                 java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+
+        StoredIndex saved = open(file, notes);
+        lock.writeLock().lock();
+        try {
+            if (saved != null && changes == savedChanges) {
+                clearTerms();
+                attach(saved);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // False (leaving the index empty) if the file is missing, corrupt or stale
+    public boolean load(File file, List<Note> notes) {
+        StoredIndex loaded = open(file, notes);
+        lock.writeLock().lock();
+        try {
+            clearTerms();
+            if (loaded == null) {
+                return false;
+            }
+            attach(loaded);
+            NoteMetrics.BYTES_READ.add(HEADER_LENGTH + FOOTER_LENGTH);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void attach(StoredIndex index) {
+        stored = index;
+        titleIndex.stored = index.title;
+        contentIndex.stored = index.content;
+        noteCount = index.notes.length;
+    }
+
+    private static StoredIndex open(File file, List<Note> notes) {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            MappedNoteFile mapped = MappedNoteFile.open(file);
+            long size = mapped.size();
+            if (size < HEADER_LENGTH + FOOTER_LENGTH || mapped.intAt(0) != INDEX_MAGIC || mapped.intAt(4) != INDEX_VERSION
+                || mapped.intAt(8) != notes.size() || mapped.longAt(12) != fingerprint(notes)
+                || mapped.intAt(size - 4) != INDEX_MAGIC) {
+                return null;
+            }
+            Note[] stored = notes.toArray(new Note[notes.size()]);
+            long[] ids = new long[stored.length];
+            for (int i = 0; i < stored.length; i++) {
+                ids[i] = stored[i].id;
+                if (i > 0 && ids[i] <= ids[i - 1]) {
+                    return null;
+                }
+            }
+            StoredIndex index = new StoredIndex(mapped, stored, ids);
+            long footer = size - FOOTER_LENGTH;
+            index.title = openField(index, footer);
+            index.content = openField(index, footer + 20);
+            return index.title != null && index.content != null ? index : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static StoredField openField(StoredIndex index, long footer) {
+        int termCount = index.file.intAt(footer);
+        long termDirectory = index.file.longAt(footer + 4);
+        long noteDirectory = index.file.longAt(footer + 12);
+        long end = index.file.size() - FOOTER_LENGTH;
+        if (termCount < 0 || termDirectory < HEADER_LENGTH || termDirectory + 8L * termCount > end
+            || noteDirectory < HEADER_LENGTH || noteDirectory + 8L * index.notes.length > end) {
+            return null;
+        }
+        return new StoredField(index, termCount, termDirectory, noteDirectory);
+    }
+
+    private static long[] writeField(DataOutputStream out, CountingOutputStream counter, FieldIndex index,
+                                     List<Note> notes, HashMap<Note, Integer> ordinals) throws IOException {
+        StoredField stored = index.stored;
+        int storedCount = stored == null ? 0 : stored.termCount;
+        int[] renumbered = new int[storedCount];
+        HashMap<String, Integer> termOrdinals = new HashMap<String, Integer>();
+        long[] termOffsets = new long[16];
+        int termCount = 0;
+
+        Iterator<Map.Entry<String, Posting>> copied = index.postings.entrySet().iterator();
+        Map.Entry<String, Posting> next = copied.hasNext() ? copied.next() : null;
+        int storedTerm = 0;
+        String storedNext = storedCount > 0 ? stored.term(0) : null;
+        while (next != null || storedNext != null) {
+            int order = storedNext == null ? 1 : next == null ? -1 : storedNext.compareTo(next.getKey());
+            String term;
+            Posting posting;
+            if (order > 0) {
+                term = next.getKey();
+                posting = next.getValue();
+            } else if (order == 0 || !index.loadedTerms.contains(storedNext)) {
+                term = storedNext;
+                posting = order == 0 ? next.getValue() : stored.postingAt(storedTerm);
+                renumbered[storedTerm] = termCount;
+            } else {
+                term = null;
+                posting = null;
+            }
+            if (order >= 0) {
+                next = copied.hasNext() ? copied.next() : null;
+            }
+            if (order <= 0) {
+                storedTerm++;
+                storedNext = storedTerm < storedCount ? stored.term(storedTerm) : null;
+            }
+            if (term == null) {
+                continue;
+            }
+
+            if (order >= 0) {
+                termOrdinals.put(term, termCount);
+            }
+            if (termCount == termOffsets.length) {
+                termOffsets = Arrays.copyOf(termOffsets, termCount * 2);
+            }
+            termOffsets[termCount++] = counter.count;
+            byte[] bytes = term.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeInt(posting.size());
+            for (int slot = 0; slot < posting.capacity(); slot++) {
+                if (posting.noteAt(slot) != null) {
+                    out.writeInt(ordinals.get(posting.noteAt(slot)));
+                    out.writeInt(posting.frequencyAt(slot));
+                }
+            }
+        }
+
+        long[] noteOffsets = new long[notes.size()];
+        for (int n = 0; n < notes.size(); n++) {
+            Note note = notes.get(n);
+            noteOffsets[n] = counter.count;
+            String[] terms = index.termsByNote.get(note);
+            int storedNote = terms == null && stored != null ? stored.index.ordinal(note) : -1;
+            byte[] positions;
+            if (terms != null) {
+                out.writeInt(terms.length);
+                for (String term : terms) {
+                    out.writeInt(termOrdinals.get(term));
+                }
+                positions = index.positionsByNote.get(note);
+            } else if (storedNote >= 0) {
+                int[] storedTerms = stored.noteTerms(storedNote);
+                out.writeInt(storedTerms.length);
+                for (int term : storedTerms) {
+                    out.writeInt(renumbered[term]);
+                }
+                positions = stored.notePositions(storedNote);
+            } else {
+                out.writeInt(0);
+                positions = new byte[0];
+            }
+            out.writeInt(positions.length);
+            out.write(positions);
+        }
+
+        long termDirectory = counter.count;
+        for (int t = 0; t < termCount; t++) {
+            out.writeLong(termOffsets[t]);
+        }
+        long noteDirectory = counter.count;
+        for (long offset : noteOffsets) {
+            out.writeLong(offset);
+        }
+        return new long[] { termCount, termDirectory, noteDirectory };
+    }
+}
@@ -0,0 +1,384 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+// HTTP/JSON on localhost: /notes (GET, POST), /notes/<id> (GET, PUT, DELETE), /notes/<id>/export,
+// /search, /query, /suggest, /stats and /metrics. A change is answered once it is fsynced to the journal.
+// Errors are {"error": message}: 400 invalid, 404 unknown, 409 title taken, 413 too large, 500 not written.
+class NoteServer {
+    static final int DEFAULT_PORT = 8765;
+    static final int MAX_BODY_BYTES = 16 * 1024 * 1024;
+    static final int DEFAULT_LIMIT = 50;
+    static final int MAX_LIMIT = 1000;
+    static final int PREVIEW_LENGTH = 80;
+    private static final int BACKLOG = 1024;
+
+    private static final class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private final NoteService service;
+    private final com.sun.net.httpserver.HttpServer server;
+    private final java.util.concurrent.ExecutorService workers;
+    private final int threads;
+
+    public NoteServer(NoteService service, int port, int threads) throws IOException {
+        this.service = service;
+        this.threads = threads;
+        // Without TCP_NODELAY each small response waits ~40 ms for the client's delayed ACK
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = com.sun.net.httpserver.HttpServer.create(
+            new java.net.InetSocketAddress(java.net.InetAddress.getLoopbackAddress(), port), BACKLOG);
+        workers = java.util.concurrent.Executors.newFixedThreadPool(threads, new java.util.concurrent.ThreadFactory() {
+            private int next;
+
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "notes-http-" + next++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        server.setExecutor(workers);
+        server.createContext("/", new com.sun.net.httpserver.HttpHandler() {
+            public void handle(com.sun.net.httpserver.HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+    }
+
+    public int getPort() { return server.getAddress().getPort(); }
+    public int getThreads() { return threads; }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(1);
+        workers.shutdown();
+    }
+
+    private void serve(com.sun.net.httpserver.HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try {
+            String method = exchange.getRequestMethod();
+            List<String> path = new ArrayList<String>();
+            for (String segment : exchange.getRequestURI().getPath().split("/")) {
+                if (!segment.isEmpty()) {
+                    path.add(segment);
+                }
+            }
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String body = readBody(exchange);
+            route(exchange, method, path, query, body);
+        } catch (HttpError e) {
+            sendError(exchange, e.status, e.getMessage());
+        } catch (NoteService.TitleTakenException e) {
+            sendError(exchange, 409, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (IOException e) {
+            sendError(exchange, 500, "Error saving notes: " + e.getMessage());
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, e.toString());
+        } finally {
+            exchange.close();
+            NoteMetrics.REQUEST.recordSince(start);
+        }
+    }
+
+    private void route(com.sun.net.httpserver.HttpExchange exchange, String method, List<String> path,
+                       Map<String, String> query, String body) throws IOException {
+        String resource = path.isEmpty() ? "" : path.get(0);
+        if (resource.equals("notes") && path.size() == 1) {
+            if (method.equals("GET")) {
+                listNotes(exchange, query);
+            } else if (method.equals("POST")) {
+                Note note = service.create(required(query, "title"), body);
+                service.getStore().flush();
+                sendJson(exchange, 201, appendNote(new StringBuilder(), note, true));
+            } else {
+                throw notAllowed(method);
+            }
+        } else if (resource.equals("notes") && path.size() == 2) {
+            Note note = noteAt(path.get(1));
+            if (method.equals("GET")) {
+                sendJson(exchange, 200, appendNote(new StringBuilder(), note, true));
+            } else if (method.equals("PUT")) {
+                if (query.get("title") == null && body.isEmpty()) {
+                    throw new HttpError(400, "Nothing to change: give a title parameter, a body or both");
+                }
+                service.update(note, query.get("title"), body.isEmpty() ? null : body);
+                service.getStore().flush();
+                sendJson(exchange, 200, appendNote(new StringBuilder(), note, true));
+            } else if (method.equals("DELETE")) {
+                service.delete(note);
+                service.getStore().flush();
+                send(exchange, 204, null, null);
+            } else {
+                throw notAllowed(method);
+            }
+        } else if (resource.equals("notes") && path.size() == 3 && path.get(2).equals("export") && method.equals("GET")) {
+            Note note = noteAt(path.get(1));
+            send(exchange, 200, "text/plain; charset=utf-8", NoteService.exportHeader(note) + note.getContent());
+        } else if (resource.equals("search") && method.equals("GET")) {
+            List<Note> results = service.search(required(query, "q"), field(query.get("field")));
+            StringBuilder json = new StringBuilder("{\"total\":").append(results.size()).append(",\"notes\":");
+            appendNotes(json, results.subList(0, Math.min(results.size(), limit(query))));
+            sendJson(exchange, 200, json.append('}'));
+        } else if (resource.equals("query") && method.equals("GET")) {
+            NoteQuery compiled = NoteQuery.compile(required(query, "q"));
+            List<Note> results = service.query(compiled);
+            StringBuilder json = new StringBuilder("{\"total\":").append(results.size()).append(",\"plan\":");
+            appendString(json, compiled.toString()).append(",\"notes\":");
+            appendNotes(json, results.subList(0, Math.min(results.size(), limit(query))));
+            sendJson(exchange, 200, json.append('}'));
+        } else if (resource.equals("suggest") && method.equals("GET")) {
+            StringBuilder json = new StringBuilder("{\"notes\":");
+            appendNotes(json, service.suggestTitles(required(query, "q"), limit(query)));
+            sendJson(exchange, 200, json.append('}'));
+        } else if (resource.equals("stats") && method.equals("GET")) {
+            sendJson(exchange, 200, appendStatistics(new StringBuilder(), service.statistics()));
+        } else if (resource.equals("metrics") && method.equals("GET")) {
+            send(exchange, 200, "text/plain; charset=utf-8", NoteMetrics.report());
+        } else {
+            throw new HttpError(404, "No such resource: " + method + " " + exchange.getRequestURI().getPath());
+        }
+    }
+
+    private void listNotes(com.sun.net.httpserver.HttpExchange exchange, Map<String, String> query) throws IOException {
+        String order = query.containsKey("order") ? query.get("order") : "created";
+        int sortOrder;
+        if (order.equals("title")) {
+            sortOrder = NoteStore.ORDER_TITLE;
+        } else if (order.equals("created")) {
+            sortOrder = NoteStore.ORDER_CREATED;
+        } else if (order.equals("modified")) {
+            sortOrder = NoteStore.ORDER_MODIFIED;
+        } else {
+            throw new IllegalArgumentException("Unknown order: " + order);
+        }
+        String after = query.get("after");
+        NoteStore.Page page = service.getStore().page(sortOrder, "true".equals(query.get("desc")),
+                                                      after == null ? null : parseCursor(after), limit(query));
+        StringBuilder json = new StringBuilder("{\"notes\":");
+        appendNotes(json, page.getNotes());
+        json.append(",\"next\":");
+        if (page.getNext() == null) {
+            json.append("null");
+        } else {
+            appendString(json, cursor(page.getNext()));
+        }
+        sendJson(exchange, 200, json.append('}'));
+    }
+
+    static String cursor(Note note) {
+        return note.getId() + ":" + note.getCreatedMillis() + ":" + note.getModifiedMillis() + ":" + note.getTitle();
+    }
+
+    static Note parseCursor(String cursor) {
+        String[] parts = cursor.split(":", 4);
+        try {
+            if (parts.length == 4) {
+                Note note = new Note(parts[3], "", Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+                note.id = Long.parseLong(parts[0]);
+                return note;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+
+    private Note noteAt(String id) {
+        Note note;
+        try {
+            note = service.get(Long.parseLong(id));
+        } catch (NumberFormatException e) {
+            throw new HttpError(404, "No such note: " + id);
+        }
+        if (note == null) {
+            throw new HttpError(404, "No note found with id #" + id);
+        }
+        return note;
+    }
+
+    private static int field(String field) {
+        if (field == null || field.equals("all")) {
+            return NoteSearchIndex.FIELD_ALL;
+        } else if (field.equals("title")) {
+            return NoteSearchIndex.FIELD_TITLE;
+        } else if (field.equals("content")) {
+            return NoteSearchIndex.FIELD_CONTENT;
+        }
+        throw new IllegalArgumentException("Unknown field: " + field);
+    }
+
+    private static int limit(Map<String, String> query) {
+        String limit = query.get("limit");
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        try {
+            int value = Integer.parseInt(limit);
+            if (value > 0 && value <= MAX_LIMIT) {
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw new IllegalArgumentException("The limit must be a number from 1 to " + MAX_LIMIT);
+    }
+
+    private static String required(Map<String, String> query, String name) {
+        String value = query.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing parameter: " + name);
+        }
+        return value;
+    }
+
+    private static HttpError notAllowed(String method) {
+        return new HttpError(405, "Method not allowed: " + method);
+    }
+
+    static Map<String, String> parseQuery(String rawQuery) {
+        HashMap<String, String> query = new HashMap<String, String>();
+        if (rawQuery == null) {
+            return query;
+        }
+        try {
+            for (String pair : rawQuery.split("&")) {
+                int equals = pair.indexOf('=');
+                String name = equals < 0 ? pair : pair.substring(0, equals);
+                String value = equals < 0 ? "" : pair.substring(equals + 1);
+                query.put(java.net.URLDecoder.decode(name, "UTF-8"), java.net.URLDecoder.decode(value, "UTF-8"));
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return query;
+    }
+
+    private static String readBody(com.sun.net.httpserver.HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = in.read(buffer)) > 0) {
+            if (body.size() + count > MAX_BODY_BYTES) {
+                throw new HttpError(413, "Request body is larger than " + MAX_BODY_BYTES + " bytes");
+            }
+            body.write(buffer, 0, count);
+        }
+        return new String(body.toByteArray(), java.nio.charset.StandardCharsets.UTF_8);
+    }
+
+    private static void sendJson(com.sun.net.httpserver.HttpExchange exchange, int status, StringBuilder json) throws IOException {
+        send(exchange, status, "application/json; charset=utf-8", json.toString());
+    }
+
+    private static void sendError(com.sun.net.httpserver.HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        appendString(json, message);
+        sendJson(exchange, status, json.append('}'));
+    }
+
+    private static void send(com.sun.net.httpserver.HttpExchange exchange, int status, String type, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = body.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+
+    static StringBuilder appendNote(StringBuilder json, Note note, boolean content) {
+        json.append("{\"id\":").append(note.getId()).append(",\"title\":");
+        appendString(json, note.getTitle());
+        json.append(",\"created\":").append(note.getCreatedMillis())
+            .append(",\"modified\":").append(note.getModifiedMillis())
+            .append(",\"length\":").append(note.getContentLength());
+        if (content) {
+            json.append(",\"content\":");
+            appendString(json, note.getContent());
+        } else {
+            json.append(",\"preview\":");
+            appendString(json, note.getContentPreview(PREVIEW_LENGTH));
+        }
+        return json.append('}');
+    }
+
+    static StringBuilder appendNotes(StringBuilder json, List<Note> notes) {
+        json.append('[');
+        for (int i = 0; i < notes.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendNote(json, notes.get(i), false);
+        }
+        return json.append(']');
+    }
+
+    static StringBuilder appendStatistics(StringBuilder json, NoteStatistics stats) {
+        json.append("{\"notes\":").append(stats == null ? 0 : stats.getTotalNotes())
+            .append(",\"characters\":").append(stats == null ? 0 : stats.getTotalCharacters())
+            .append(",\"words\":").append(stats == null ? 0 : stats.getTotalWords());
+        if (stats != null) {
+            json.append(",\"oldest\":");
+            appendNote(json, stats.getOldestNote(), false);
+            json.append(",\"newest\":");
+            appendNote(json, stats.getNewestNote(), false);
+            json.append(",\"longest\":");
+            appendNote(json, stats.getLongestNote(), false);
+            json.append(",\"shortest\":");
+            appendNote(json, stats.getShortestNote(), false);
+        }
+        return json.append('}');
+    }
+
+    static StringBuilder appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        return json.append('"');
+    }
+}
@@ -0,0 +1,249 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+// Note operations with the menu's rules but no console I/O; invalid input is an IllegalArgumentException.
+class NoteService {
+    static final class TitleTakenException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+        
+        TitleTakenException() {
+            super("A note with this title already exists!");
+        }
+    }
+    
+    private final NoteStore store;
+    
+    public NoteService(NoteStore store) {
+        this.store = store;
+    }
+    
+    public NoteStore getStore() { return store; }
+    
+    public List<Note> getNotes() { return store.getNotes(); }
+    
+    public Note get(String title) {
+        return store.findByTitle(title.trim());
+    }
+    
+    public Note get(long id) {
+        return store.findById(id);
+    }
+    
+    public Note create(String title, String content) throws IOException {
+        title = requireTitle(title);
+        content = requireContent(content);
+        Note note = new Note(title, content);
+        if (!store.add(note)) {
+            throw new TitleTakenException();
+        }
+        return note;
+    }
+    
+    // A null title or content is left unchanged
+    public void update(Note note, String title, String content) throws IOException {
+        if (title != null) {
+            title = requireTitle(title);
+        }
+        if (content != null) {
+            content = requireContent(content);
+        }
+        if (!store.update(note, title, content)) {
+            throw new TitleTakenException();
+        }
+    }
+    
+    public void delete(Note note) throws IOException {
+        store.remove(note);
+    }
+    
+    public void delete(long id) throws IOException {
+        if (!store.remove(id)) {
+            throw new IllegalArgumentException("No note found with id #" + id);
+        }
+    }
+    
+    public List<Note> search(String query, int field) {
+        if (query.trim().isEmpty()) {
+            throw new IllegalArgumentException("Search term cannot be empty!");
+        }
+        return store.search(query.trim(), field);
+    }
+    
+    public List<Note> query(String query) {
+        if (query.trim().isEmpty()) {
+            throw new IllegalArgumentException("Search term cannot be empty!");
+        }
+        return query(NoteQuery.compile(query.trim()));
+    }
+    
+    public List<Note> query(NoteQuery query) {
+        return store.query(query);
+    }
+    
+    // Titles starting with the query, then ones a typo or two away from it
+    public List<Note> suggestTitles(String query, int limit) {
+        if (query.trim().isEmpty()) {
+            throw new IllegalArgumentException("Search term cannot be empty!");
+        }
+        return store.suggestTitles(query.trim(), limit);
+    }
+    
+    public List<Note> similarTitles(String title, int limit) {
+        return store.similarTitles(title.trim(), limit);
+    }
+    
+    // Null when there are no notes
+    public NoteStatistics statistics() {
+        return store.statistics();
+    }
+    
+    public Note importFile(File file, String title) throws IOException {
+        return importFile(file, title, 0).get(0);
+    }
+    
+    // Notes in order. A file over MAX_SINGLE_NOTE_BYTES is split into DEFAULT_PART_CHARS parts even when partChars is 0.
+    public List<Note> importFile(File file, String title, int partChars) throws IOException {
+        if (!file.exists()) {
+            throw new FileNotFoundException("File not found: " + file.getPath());
+        }
+        if (partChars == 0 && file.length() > StreamingNoteImporter.MAX_SINGLE_NOTE_BYTES) {
+            partChars = StreamingNoteImporter.DEFAULT_PART_CHARS;
+        }
+        
+        long start = System.nanoTime();
+        try {
+            return new StreamingNoteImporter(this, partChars).run(file, title);
+        } finally {
+            NoteMetrics.IMPORT.recordSince(start);
+        }
+    }
+    
+    public BulkNoteImporter.Report importDirectory(File directory, BulkNoteImporter.Listener listener) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return new BulkNoteImporter(this).run(directory, listener);
+        } finally {
+            NoteMetrics.IMPORT.recordSince(start);
+        }
+    }
+    
+    // A taken title gets a timestamp suffix, then a counter if that is taken too
+    Note addImported(String title, Object body) throws IOException {
+        title = importTitle(title);
+        Note note = newNote(title, body);
+        if (store.add(note)) {
+            return note;
+        }
+        String suffixed = title + "_" + System.currentTimeMillis();
+        note = newNote(suffixed, body);
+        for (int n = 2; !store.add(note); n++) {
+            note = newNote(suffixed + "_" + n, body);
+        }
+        return note;
+    }
+    
+    // Notes whose title is taken are retitled as addImported() would and added in a second change
+    void addAllImported(List<Note> notes) throws IOException {
+        Map<Note, String> titles = new IdentityHashMap<Note, String>();
+        List<Note> refused = store.addAll(notes);
+        String suffixed = "_" + System.currentTimeMillis();
+        for (int n = 1; !refused.isEmpty(); n++) {
+            for (Note note : refused) {
+                if (!titles.containsKey(note)) {
+                    titles.put(note, note.getTitle());
+                }
+                note.update(titles.get(note) + suffixed + (n > 1 ? "_" + n : ""), null);
+            }
+            refused = store.addAll(refused);
+        }
+    }
+    
+    // An empty title becomes Imported_Note_<n>
+    String importTitle(String title) {
+        return importTitle(title, 0);
+    }
+    
+    String importTitle(String title, int staged) {
+        title = title.trim();
+        return title.isEmpty() ? "Imported_Note_" + (store.size() + staged + 1) : title;
+    }
+    
+    static Note newNote(String title, Object body) {
+        long now = System.currentTimeMillis();
+        return body instanceof CompressedBody ? new Note(title, (CompressedBody) body, now, now)
+                                              : new Note(title, (String) body, now, now);
+    }
+    
+    // Lines are joined with \n whatever the file used, and the result is trimmed
+    static String readFileContent(File file) throws IOException {
+        BufferedReader bufferedReader = new BufferedReader(new FileReader(file));
+        StringBuilder contentBuilder = new StringBuilder();
+        try {
+            String line;
+            while ((line = bufferedReader.readLine()) != null) {
+                if (contentBuilder.length() > 0) {
+                    contentBuilder.append("\n");
+                }
+                contentBuilder.append(line);
+            }
+        } finally {
+            bufferedReader.close();
+        }
+        return contentBuilder.toString().trim();
+    }
+    
+    public File export(Note note) throws IOException {
+        long start = System.nanoTime();
+        File file = new File(store.getDirectory(), fileNameFor(note.getTitle()) + ".txt");
+        try {
+            BulkNoteExporter.writeFile(note, file.toPath(), java.nio.file.StandardOpenOption.CREATE,
+                                       java.nio.file.StandardOpenOption.TRUNCATE_EXISTING);
+        } finally {
+            NoteMetrics.EXPORT.recordSince(start);
+        }
+        return file;
+    }
+    
+    // A directory, or one archive when target ends in .zip or .tar
+    public BulkNoteExporter.Report exportAll(List<Note> notes, File target) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return new BulkNoteExporter().export(notes, target);
+        } finally {
+            NoteMetrics.EXPORT.recordSince(start);
+        }
+    }
+    
+    static String fileNameFor(String title) {
+        return title.replaceAll("[^a-zA-Z0-9\\s]", "").replace(" ", "_");
+    }
+    
+    static String exportHeader(Note note) {
+        return "Title: " + note.getTitle() + "\n"
+             + "Created: " + NoteDates.format(NoteDates.LONG, note.getCreatedMillis()) + "\n"
+             + "Modified: " + NoteDates.format(NoteDates.LONG, note.getModifiedMillis()) + "\n"
+             + "--------------------------------------------------\n\n";
+    }
+    
+    public void save() throws IOException {
+        store.checkpoint();
+    }
+    
+    private static String requireTitle(String title) {
+        title = title.trim();
+        if (title.isEmpty()) {
+            throw new IllegalArgumentException("Title cannot be empty!");
+        }
+        return title;
+    }
+    
+    private static String requireContent(String content) {
+        content = content.trim();
+        if (content.isEmpty()) {
+            throw new IllegalArgumentException("Content cannot be empty!");
+        }
+        return content;
+    }
+}
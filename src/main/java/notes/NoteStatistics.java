@@ -0,0 +1,83 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+class NoteStatistics {
+    private final int totalNotes;
+    private final long totalCharacters;
+    private final long totalWords;
+    private final Note oldestNote;
+    private final Note newestNote;
+    private final Note longestNote;
+    private final Note shortestNote;
+    
+    public NoteStatistics(int totalNotes, long totalCharacters, long totalWords, Note oldestNote, 
+                          Note newestNote, Note longestNote, Note shortestNote) {
+        this.totalNotes = totalNotes;
+        this.totalCharacters = totalCharacters;
+        this.totalWords = totalWords;
+        this.oldestNote = oldestNote;
+        this.newestNote = newestNote;
+        this.longestNote = longestNote;
+        this.shortestNote = shortestNote;
+    }
+    
+    // Ties go the same way as NoteStore's running statistics: earliest oldest/shortest, latest newest/longest.
+    // Expects at least one note.
+    public static NoteStatistics compute(List<Note> notes) {
+        return NoteParallel.run(notes, PASS);
+    }
+    
+    private static final NoteParallel.Pass<NoteStatistics> PASS = new NoteParallel.Pass<NoteStatistics>() {
+        NoteStatistics accumulate(List<Note> notes, int from, int to) {
+            long totalCharacters = 0;
+            long totalWords = 0;
+            Note oldestNote = notes.get(from);
+            Note newestNote = notes.get(from);
+            Note longestNote = notes.get(from);
+            Note shortestNote = notes.get(from);
+            
+            for (int i = from; i < to; i++) {
+                Note note = notes.get(i);
+                int contentLength = note.getContentLength();
+                totalCharacters += contentLength;
+                totalWords += note.getWordCount();
+                
+                if (note.getCreatedMillis() < oldestNote.getCreatedMillis()) {
+                    oldestNote = note;
+                }
+                
+                if (note.getCreatedMillis() >= newestNote.getCreatedMillis()) {
+                    newestNote = note;
+                }
+                
+                if (contentLength >= longestNote.getContentLength()) {
+                    longestNote = note;
+                }
+                
+                if (contentLength < shortestNote.getContentLength()) {
+                    shortestNote = note;
+                }
+            }
+            return new NoteStatistics(to - from, totalCharacters, totalWords, oldestNote, newestNote, longestNote, shortestNote);
+        }
+        
+        NoteStatistics merge(NoteStatistics left, NoteStatistics right) {
+            return new NoteStatistics(
+                left.totalNotes + right.totalNotes, left.totalCharacters + right.totalCharacters, left.totalWords + right.totalWords,
+                right.oldestNote.getCreatedMillis() < left.oldestNote.getCreatedMillis() ? right.oldestNote : left.oldestNote,
+                right.newestNote.getCreatedMillis() >= left.newestNote.getCreatedMillis() ? right.newestNote : left.newestNote,
+                right.longestNote.getContentLength() >= left.longestNote.getContentLength() ? right.longestNote : left.longestNote,
+                right.shortestNote.getContentLength() < left.shortestNote.getContentLength() ? right.shortestNote : left.shortestNote);
+        }
+    };
+    
+    public int getTotalNotes() { return totalNotes; }
+    public long getTotalCharacters() { return totalCharacters; }
+    public long getTotalWords() { return totalWords; }
+    public Note getOldestNote() { return oldestNote; }
+    public Note getNewestNote() { return newestNote; }
+    public Note getLongestNote() { return longestNote; }
+    public Note getShortestNote() { return shortestNote; }
+}
@@ -0,0 +1,776 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+// Reads take no lock; writers lock the stripes of the title keys they touch.
+class NoteStore {
+    static final String DATA_FILE = "notes.dat";
+    static final String LEGACY_FILE = "notes.txt";
+    static final String JOURNAL_FILE = "notes.wal";
+    static final String INDEX_FILE = "notes.idx";
+    static final String SPOOL_SUFFIX = ".spool";
+    private static final int STRIPES = 64;
+    static final long DEFAULT_FLUSH_DELAY_MILLIS = 100;
+    static final long DEFAULT_FLUSH_BATCH_BYTES = 1024 * 1024;
+    static final int DEFAULT_COMPRESS_ABOVE = 4096;
+    
+    static final int ORDER_TITLE = 1;
+    static final int ORDER_CREATED = 2;
+    static final int ORDER_MODIFIED = 3;
+    
+    private static final Comparator<Note> BY_TITLE = new Comparator<Note>() {
+        public int compare(Note a, Note b) {
+            int byTitle = String.CASE_INSENSITIVE_ORDER.compare(a.getTitle(), b.getTitle());
+            if (byTitle == 0) {
+                byTitle = a.getTitle().compareTo(b.getTitle());
+            }
+            return byTitle != 0 ? byTitle : Long.compare(a.id, b.id);
+        }
+    };
+    private static final Comparator<Note> BY_CREATED = new Comparator<Note>() {
+        public int compare(Note a, Note b) {
+            int byDate = Long.compare(a.getCreatedMillis(), b.getCreatedMillis());
+            return byDate != 0 ? byDate : Long.compare(a.id, b.id);
+        }
+    };
+    private static final Comparator<Note> BY_MODIFIED = new Comparator<Note>() {
+        public int compare(Note a, Note b) {
+            int byDate = Long.compare(a.getModifiedMillis(), b.getModifiedMillis());
+            return byDate != 0 ? byDate : Long.compare(a.id, b.id);
+        }
+    };
+    private static final Comparator<Note> BY_LENGTH = new Comparator<Note>() {
+        public int compare(Note a, Note b) {
+            int byLength = Integer.compare(a.getContentLength(), b.getContentLength());
+            return byLength != 0 ? byLength : Long.compare(a.id, b.id);
+        }
+    };
+    
+    private final File directory;
+    private final File dataFile;
+    private final File legacyFile;
+    private final File indexFile;
+    private final boolean mapped;
+    private final java.util.concurrent.ConcurrentHashMap<String, Note> notesByTitle = new java.util.concurrent.ConcurrentHashMap<String, Note>();
+    private final NoteIdTable notesById = new NoteIdTable();
+    private final java.util.concurrent.atomic.AtomicLong nextId = new java.util.concurrent.atomic.AtomicLong(1);
+    // Taken out before a change that could move it and put back after
+    private final java.util.concurrent.ConcurrentSkipListSet<Note> notesByTitleOrder = new java.util.concurrent.ConcurrentSkipListSet<Note>(BY_TITLE);
+    private final java.util.concurrent.ConcurrentSkipListSet<Note> notesByModified = new java.util.concurrent.ConcurrentSkipListSet<Note>(BY_MODIFIED);
+    private final java.util.concurrent.ConcurrentSkipListSet<Note> notesByCreated = new java.util.concurrent.ConcurrentSkipListSet<Note>(BY_CREATED);
+    private final NoteJournal journal;
+    private final NoteSearchIndex searchIndex = new NoteSearchIndex();
+    private final NoteBodyPool bodies;
+    private final java.util.concurrent.locks.ReentrantLock[] stripes = new java.util.concurrent.locks.ReentrantLock[STRIPES];
+    // Writers hold this shared; loading, compaction and checkpoints hold it exclusively
+    private final java.util.concurrent.locks.ReentrantReadWriteLock commitLock = new java.util.concurrent.locks.ReentrantReadWriteLock();
+    
+    private volatile boolean statisticsTracked;
+    private final java.util.concurrent.atomic.AtomicLong totalCharacters = new java.util.concurrent.atomic.AtomicLong();
+    private final java.util.concurrent.atomic.AtomicLong totalWords = new java.util.concurrent.atomic.AtomicLong();
+    private final java.util.concurrent.ConcurrentSkipListSet<Note> notesByLength = new java.util.concurrent.ConcurrentSkipListSet<Note>(BY_LENGTH);
+    
+    private volatile boolean titlesIndexed;
+    private final NoteTitleIndex titleIndex = new NoteTitleIndex();
+    
+    private final NoteQuery.Source querySource = new NoteQuery.Source() {
+        public Collection<Note> all() {
+            return getNotes();
+        }
+        
+        public Collection<Note> createdBetween(long from, long to) {
+            return notesByCreated.subSet(probe(from, Long.MIN_VALUE), true, probe(to, Long.MAX_VALUE), true);
+        }
+        
+        public Collection<Note> modifiedBetween(long from, long to) {
+            return notesByModified.subSet(probe(from, Long.MIN_VALUE), true, probe(to, Long.MAX_VALUE), true);
+        }
+        
+        public Set<Note> matching(String query, int field) {
+            return searchIndex.matching(query, field);
+        }
+    };
+    
+    private volatile boolean created;
+    private volatile int migratedNotes;
+    private volatile boolean damaged;
+    private volatile boolean recoveredFromPrevious;
+    private volatile int replayedChanges;
+    
+    public NoteStore(File directory, boolean mapped) {
+        this(directory, mapped, DEFAULT_FLUSH_DELAY_MILLIS, DEFAULT_FLUSH_BATCH_BYTES);
+    }
+    
+    public NoteStore(File directory, boolean mapped, long flushDelayMillis, long flushBatchBytes) {
+        this(directory, mapped, flushDelayMillis, flushBatchBytes, DEFAULT_COMPRESS_ABOVE);
+    }
+    
+    public NoteStore(File directory, boolean mapped, long flushDelayMillis, long flushBatchBytes, int compressAbove) {
+        this.directory = directory;
+        this.dataFile = new File(directory, DATA_FILE);
+        this.legacyFile = new File(directory, LEGACY_FILE);
+        this.indexFile = new File(directory, INDEX_FILE);
+        this.mapped = mapped;
+        this.journal = new NoteJournal(dataFile, new File(directory, JOURNAL_FILE), flushDelayMillis, flushBatchBytes);
+        this.bodies = new NoteBodyPool(compressAbove);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new java.util.concurrent.locks.ReentrantLock();
+        }
+    }
+    
+    public File getDirectory() { return directory; }
+    public File getDataFile() { return dataFile; }
+    public File getJournalFile() { return journal.getJournalFile(); }
+    
+    File newSpoolFile() throws IOException {
+        return File.createTempFile("import-", SPOOL_SUFFIX, directory);
+    }
+    public boolean isMapped() { return mapped; }
+    public boolean wasCreated() { return created; }
+    public int getMigratedNotes() { return migratedNotes; }
+    public boolean isDamaged() { return damaged; }
+    public boolean wasRecoveredFromPrevious() { return recoveredFromPrevious; }
+    public int getReplayedChanges() { return replayedChanges; }
+    
+    public void open() throws IOException {
+        created = false;
+        migratedNotes = 0;
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create notes directory " + directory);
+        }
+        File[] spooled = directory.listFiles();
+        for (int i = 0; spooled != null && i < spooled.length; i++) {
+            if (spooled[i].getName().endsWith(SPOOL_SUFFIX)) {
+                spooled[i].delete();
+            }
+        }
+        // A missing snapshot next to a previous one is a crash between two renames
+        boolean exists = dataFile.exists() || journal.getPreviousSnapshotFile().exists();
+        if (!exists && legacyFile.exists()) {
+            migratedNotes = LegacyNoteFile.migrate(legacyFile, dataFile);
+        } else if (!exists) {
+            NoteJournal.writeSnapshot(dataFile, new ArrayList<Note>());
+            created = true;
+        }
+        load();
+    }
+    
+    // If loading fails the journal stays closed, so mutations are refused
+    public void load() throws IOException {
+        long start = System.nanoTime();
+        commitLock.writeLock().lock();
+        try {
+            NoteJournal.LoadedNotes loaded = new NoteJournal.LoadedNotes();
+            List<Note> snapshot = null;
+            damaged = false;
+            recoveredFromPrevious = false;
+            replayedChanges = 0;
+            journal.close();
+            
+            try {
+                IOException failure = null;
+                try {
+                    readSnapshot(dataFile, loaded);
+                } catch (IOException e) {
+                    failure = e;
+                }
+                File previous = journal.getPreviousSnapshotFile();
+                if ((failure != null || damaged) && previous.exists()) {
+                    loaded.clear();
+                    damaged = false;
+                    readSnapshot(previous, loaded);
+                    replayedChanges += journal.replayPrevious(loaded);
+                    journal.setAsideSnapshot();
+                    recoveredFromPrevious = true;
+                } else if (failure != null) {
+                    throw failure;
+                }
+                
+                // The index goes with the snapshot, so it is opened before replay
+                List<Note> snapshotNotes = loaded.list();
+                if (searchIndex.load(indexFile, snapshotNotes)) {
+                    snapshot = snapshotNotes;
+                }
+                loaded.replayed.clear();
+                replayedChanges += journal.replay(loaded);
+                journal.open();
+            } finally {
+                List<Note> notes = loaded.list();
+                nextId.set(loaded.getNextId());
+                notesByTitle.clear();
+                notesById.clear();
+                statisticsTracked = false;
+                titlesIndexed = false;
+                titleIndex.clear();
+                totalCharacters.set(0);
+                totalWords.set(0);
+                notesByTitleOrder.clear();
+                notesByCreated.clear();
+                notesByModified.clear();
+                notesByLength.clear();
+                bodies.clear();
+                NoteContentCache.SHARED.clear();
+                for (Note note : notes) {
+                    Object body = note.getBody();
+                    Object shared = bodies.acquire(body);
+                    if (shared != body) {
+                        note.setBody(shared);
+                    }
+                    notesById.put(note.id, note);
+                    notesByTitle.put(Note.titleKey(note.getTitle()), note);
+                    list(note, 1);
+                }
+                if (snapshot == null) {
+                    searchIndex.rebuild(notes);
+                } else {
+                    for (Note note : snapshot) {
+                        if (loaded.byId.get(note.id) != note || loaded.replayed.contains(note)) {
+                            searchIndex.remove(note);
+                        }
+                    }
+                    for (Note note : loaded.replayed) {
+                        if (loaded.byId.get(note.id) == note) {
+                            searchIndex.add(note);
+                        }
+                    }
+                }
+            }
+        } finally {
+            commitLock.writeLock().unlock();
+            NoteMetrics.LOAD.recordSince(start);
+        }
+    }
+    
+    private void readSnapshot(File file, NoteJournal.LoadedNotes loaded) throws IOException {
+        if (mapped) {
+            MappedNoteFile mappedFile = MappedNoteFile.open(file);
+            List<Note> notes = mappedFile.readNotes();
+            loaded.reserveIds(mappedFile.getNextId());
+            for (Note note : notes) {
+                loaded.add(note);
+            }
+            damaged = mappedFile.isDamaged();
+            return;
+        }
+        NoteFileReader reader = new NoteFileReader(file);
+        try {
+            loaded.reserveIds(reader.getNextId());
+            Note note;
+            while ((note = reader.next()) != null) {
+                loaded.add(note);
+            }
+            damaged = reader.isDamaged();
+        } finally {
+            reader.close();
+        }
+    }
+    
+    public void flush() throws IOException {
+        try {
+            journal.flush();
+        } finally {
+            undoLostChanges();
+        }
+    }
+    
+    public void close() throws IOException {
+        journal.awaitCompaction();
+        journal.close();
+        NoteContentCache.SHARED.clear();
+    }
+    
+    public void checkpoint() throws IOException {
+        long start = System.nanoTime();
+        commitLock.writeLock().lock();
+        try {
+            writeAndUndoLost();
+            List<Note> notes = getNotes();
+            journal.checkpoint(notes, nextId.get());
+            searchIndex.save(indexFile, notes);
+        } finally {
+            commitLock.writeLock().unlock();
+            NoteMetrics.CHECKPOINT.recordSince(start);
+        }
+    }
+    
+    public List<Note> getNotes() {
+        ArrayList<Note> notes = new ArrayList<Note>(notesById.size());
+        for (Note note : notesById) {
+            notes.add(note);
+        }
+        return notes;
+    }
+    
+    public int size() { return notesByTitle.size(); }
+    
+    public Note findByTitle(String title) {
+        return notesByTitle.get(Note.titleKey(title));
+    }
+    
+    public Note findById(long id) {
+        return notesById.get(id);
+    }
+    
+    public List<Note> search(String query, int field) {
+        long start = System.nanoTime();
+        try {
+            return searchIndex.search(query, field);
+        } finally {
+            NoteMetrics.SEARCH.recordSince(start);
+        }
+    }
+    
+    public List<Note> query(NoteQuery query) {
+        long start = System.nanoTime();
+        try {
+            return query.run(querySource);
+        } finally {
+            NoteMetrics.QUERY.recordSince(start);
+        }
+    }
+    
+    public List<Note> suggestTitles(String query, int limit) {
+        long start = System.nanoTime();
+        try {
+            return titles().suggest(query, limit);
+        } finally {
+            NoteMetrics.SUGGEST.recordSince(start);
+        }
+    }
+    
+    public List<Note> similarTitles(String title, int limit) {
+        long start = System.nanoTime();
+        try {
+            return titles().similar(title, limit);
+        } finally {
+            NoteMetrics.SUGGEST.recordSince(start);
+        }
+    }
+    
+    private NoteTitleIndex titles() {
+        if (!titlesIndexed) {
+            commitLock.writeLock().lock();
+            try {
+                if (!titlesIndexed) {
+                    titleIndex.rebuild(notesById);
+                    titlesIndexed = true;
+                }
+            } finally {
+                commitLock.writeLock().unlock();
+            }
+        }
+        return titleIndex;
+    }
+    
+    public Page page(int order, boolean descending, Note after, int limit) {
+        java.util.NavigableSet<Note> notes;
+        switch (order) {
+            case ORDER_TITLE:
+                notes = notesByTitleOrder;
+                break;
+            case ORDER_CREATED:
+                notes = notesByCreated;
+                break;
+            case ORDER_MODIFIED:
+                notes = notesByModified;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown sort order: " + order);
+        }
+        if (descending) {
+            notes = notes.descendingSet();
+        }
+        if (after != null) {
+            notes = notes.tailSet(after, false);
+        }
+        
+        ArrayList<Note> page = new ArrayList<Note>(Math.min(limit, 1024));
+        Iterator<Note> iterator = notes.iterator();
+        while (page.size() < limit && iterator.hasNext()) {
+            page.add(iterator.next());
+        }
+        Note next = null;
+        if (iterator.hasNext() && !page.isEmpty()) {
+            next = page.get(page.size() - 1).copy();
+        }
+        return new Page(page, next);
+    }
+    
+    static final class Page {
+        private final List<Note> notes;
+        private final Note next;
+        
+        Page(List<Note> notes, Note next) {
+            this.notes = notes;
+            this.next = next;
+        }
+        
+        public List<Note> getNotes() { return notes; }
+        
+        // A frozen copy, so a change to the note cannot move the cursor
+        public Note getNext() { return next; }
+    }
+    
+    public NoteStatistics statistics() {
+        long start = System.nanoTime();
+        try {
+            return currentStatistics();
+        } finally {
+            NoteMetrics.STATISTICS.recordSince(start);
+        }
+    }
+    
+    private NoteStatistics currentStatistics() {
+        if (!statisticsTracked) {
+            commitLock.writeLock().lock();
+            try {
+                if (!statisticsTracked) {
+                    long[] totals = NoteParallel.run(getNotes(), countPass);
+                    totalCharacters.addAndGet(totals[0]);
+                    totalWords.addAndGet(totals[1]);
+                    statisticsTracked = true;
+                }
+            } finally {
+                commitLock.writeLock().unlock();
+            }
+        }
+        
+        try {
+            return new NoteStatistics(size(), totalCharacters.get(), totalWords.get(), notesByCreated.first(),
+                                      notesByCreated.last(), notesByLength.last(), notesByLength.first());
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
+    
+    private final NoteParallel.Pass<long[]> countPass = new NoteParallel.Pass<long[]>() {
+        long[] accumulate(List<Note> notes, int from, int to) {
+            long[] totals = new long[2];
+            for (int i = from; i < to; i++) {
+                Note note = notes.get(i);
+                totals[0] += note.getContentLength();
+                totals[1] += note.getWordCount();
+                notesByLength.add(note);
+            }
+            return totals;
+        }
+        
+        long[] merge(long[] left, long[] right) {
+            left[0] += right[0];
+            left[1] += right[1];
+            return left;
+        }
+    };
+    
+    private void count(Note note, int sign) {
+        totalCharacters.addAndGet(sign * (long) note.getContentLength());
+        totalWords.addAndGet(sign * (long) note.getWordCount());
+        if (sign > 0) {
+            notesByLength.add(note);
+        } else {
+            notesByLength.remove(note);
+        }
+    }
+    
+    private void list(Note note, int sign) {
+        if (sign > 0) {
+            notesByTitleOrder.add(note);
+            notesByCreated.add(note);
+            notesByModified.add(note);
+        } else {
+            notesByTitleOrder.remove(note);
+            notesByCreated.remove(note);
+            notesByModified.remove(note);
+        }
+    }
+    
+    private void track(Note note, int sign) {
+        if (statisticsTracked) {
+            count(note, sign);
+        }
+    }
+    
+    private void indexTitle(Note note, String title, int sign) {
+        if (!titlesIndexed) {
+            return;
+        }
+        if (sign > 0) {
+            titleIndex.add(note);
+        } else {
+            titleIndex.remove(note, title);
+        }
+    }
+    
+    // A note too large to journal is refused with an IllegalArgumentException
+    public boolean add(Note note) throws IOException {
+        long start = System.nanoTime();
+        String key = Note.titleKey(note.getTitle());
+        undoLostChanges();
+        commitLock.readLock().lock();
+        try {
+            java.util.concurrent.locks.ReentrantLock[] locks = lockStripes(key, key);
+            try {
+                if (notesByTitle.containsKey(key)) {
+                    return false;
+                }
+                NoteJournal.checkRecordLength(note.getTitle(), note.getTitle(), note.getStoredLength());
+                note.id = nextId.getAndIncrement();
+                publish(note);
+                journal.appendPut(note.getTitle(), note, null);
+            } finally {
+                unlock(locks);
+            }
+        } finally {
+            commitLock.readLock().unlock();
+            NoteMetrics.CREATE.recordSince(start);
+            undoLostChanges();
+        }
+        compactJournalIfNeeded();
+        return true;
+    }
+    
+    // Returns the notes left out because their title is taken
+    public List<Note> addAll(List<Note> notes) throws IOException {
+        return addAll(notes, false);
+    }
+    
+    public boolean addAllOrNone(List<Note> notes) throws IOException {
+        return addAll(notes, true).isEmpty();
+    }
+    
+    private List<Note> addAll(List<Note> notes, boolean allOrNone) throws IOException {
+        long start = System.nanoTime();
+        for (Note note : notes) {
+            NoteJournal.checkRecordLength(note.getTitle(), note.getTitle(), note.getStoredLength());
+        }
+        List<Note> added = new ArrayList<Note>(notes.size());
+        List<Note> refused = new ArrayList<Note>();
+        undoLostChanges();
+        commitLock.writeLock().lock();
+        try {
+            if (allOrNone) {
+                Set<String> keys = new HashSet<String>();
+                for (Note note : notes) {
+                    String key = Note.titleKey(note.getTitle());
+                    if (notesByTitle.containsKey(key) || !keys.add(key)) {
+                        return notes;
+                    }
+                }
+            }
+            for (Note note : notes) {
+                if (notesByTitle.containsKey(Note.titleKey(note.getTitle()))) {
+                    refused.add(note);
+                    continue;
+                }
+                note.id = nextId.getAndIncrement();
+                publish(note);
+                added.add(note);
+            }
+            journal.appendPuts(added);
+        } finally {
+            commitLock.writeLock().unlock();
+            NoteMetrics.CREATE.recordSince(start);
+            undoLostChanges();
+        }
+        compactJournalIfNeeded();
+        return refused;
+    }
+    
+    public boolean update(Note note, String title, String content) throws IOException {
+        long start = System.nanoTime();
+        undoLostChanges();
+        commitLock.readLock().lock();
+        try {
+            while (true) {
+                String originalTitle = note.getTitle();
+                String key = Note.titleKey(originalTitle);
+                String newKey = title != null ? Note.titleKey(title) : key;
+                java.util.concurrent.locks.ReentrantLock[] locks = lockStripes(key, newKey);
+                try {
+                    if (!isCurrent(note, key)) {
+                        continue;
+                    }
+                    Note existing = notesByTitle.get(newKey);
+                    if (existing != null && existing != note) {
+                        return false;
+                    }
+                    NoteJournal.checkRecordLength(originalTitle, title != null ? title : originalTitle,
+                                                  content != null ? Note.utf8Length(content) : note.getStoredLength());
+                    
+                    Note before = note.copy();
+                    track(note, -1);
+                    list(note, -1);
+                    Object oldBody = note.getBody();
+                    note.update(title, content);
+                    if (content != null) {
+                        note.setBody(bodies.acquire(note.getBody()));
+                        bodies.release(oldBody);
+                    }
+                    list(note, 1);
+                    track(note, 1);
+                    if (!newKey.equals(key)) {
+                        notesByTitle.put(newKey, note);
+                        notesByTitle.remove(key);
+                        indexTitle(note, originalTitle, -1);
+                        indexTitle(note, title, 1);
+                    }
+                    searchIndex.update(note);
+                    journal.appendPut(originalTitle, note, before);
+                    break;
+                } finally {
+                    unlock(locks);
+                }
+            }
+        } finally {
+            commitLock.readLock().unlock();
+            NoteMetrics.UPDATE.recordSince(start);
+            undoLostChanges();
+        }
+        compactJournalIfNeeded();
+        return true;
+    }
+    
+    public boolean remove(long id) throws IOException {
+        Note note = notesById.get(id);
+        if (note == null) {
+            return false;
+        }
+        remove(note);
+        return true;
+    }
+    
+    public void remove(Note note) throws IOException {
+        long start = System.nanoTime();
+        undoLostChanges();
+        commitLock.readLock().lock();
+        try {
+            while (true) {
+                String key = Note.titleKey(note.getTitle());
+                java.util.concurrent.locks.ReentrantLock[] locks = lockStripes(key, key);
+                try {
+                    if (!isCurrent(note, key)) {
+                        continue;
+                    }
+                    unpublish(note);
+                    journal.appendDelete(note.getTitle(), note);
+                    break;
+                } finally {
+                    unlock(locks);
+                }
+            }
+        } finally {
+            commitLock.readLock().unlock();
+            NoteMetrics.DELETE.recordSince(start);
+            undoLostChanges();
+        }
+        compactJournalIfNeeded();
+    }
+    
+    private void publish(Note note) {
+        note.setBody(bodies.acquire(note.getBody()));
+        notesById.put(note.id, note);
+        notesByTitle.put(Note.titleKey(note.getTitle()), note);
+        list(note, 1);
+        track(note, 1);
+        searchIndex.add(note);
+        indexTitle(note, note.getTitle(), 1);
+    }
+    
+    private void unpublish(Note note) {
+        notesByTitle.remove(Note.titleKey(note.getTitle()));
+        notesById.remove(note.id);
+        list(note, -1);
+        track(note, -1);
+        bodies.release(note.getBody());
+        searchIndex.remove(note);
+        indexTitle(note, note.getTitle(), -1);
+    }
+    
+    // Newest first. Not with the commit lock held shared.
+    private void undoLostChanges() {
+        if (!journal.hasLostChanges()) {
+            return;
+        }
+        commitLock.writeLock().lock();
+        try {
+            List<NoteJournal.LostChange> changes = journal.takeLostChanges();
+            for (int i = changes.size() - 1; i >= 0; i--) {
+                NoteJournal.LostChange change = changes.get(i);
+                Note note = change.note;
+                if (notesById.get(note.id) == note) {
+                    unpublish(note);
+                }
+                if (change.before != null) {
+                    note.replaceWith(change.before);
+                    publish(note);
+                }
+            }
+        } finally {
+            commitLock.writeLock().unlock();
+        }
+    }
+    
+    private boolean isCurrent(Note note, String key) {
+        if (!Note.titleKey(note.getTitle()).equals(key)) {
+            return false;
+        }
+        if (notesByTitle.get(key) != note) {
+            throw new IllegalArgumentException("Note no longer exists!");
+        }
+        return true;
+    }
+    
+    private static Note probe(long millis, long id) {
+        Note probe = new Note("", "", millis, millis);
+        probe.id = id;
+        return probe;
+    }
+    
+    // Index order, so two renames cannot deadlock
+    private java.util.concurrent.locks.ReentrantLock[] lockStripes(String firstKey, String secondKey) {
+        int first = (firstKey.hashCode() & 0x7FFFFFFF) % STRIPES;
+        int second = (secondKey.hashCode() & 0x7FFFFFFF) % STRIPES;
+        java.util.concurrent.locks.ReentrantLock[] locks = first == second
+            ? new java.util.concurrent.locks.ReentrantLock[] { stripes[first] }
+            : new java.util.concurrent.locks.ReentrantLock[] { stripes[Math.min(first, second)], stripes[Math.max(first, second)] };
+        for (java.util.concurrent.locks.ReentrantLock lock : locks) {
+            lock.lock();
+        }
+        return locks;
+    }
+    
+    private static void unlock(java.util.concurrent.locks.ReentrantLock[] locks) {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].unlock();
+        }
+    }
+    
+    private void writeAndUndoLost() {
+        try {
+            journal.flush();
+        } catch (IOException e) {
+            // Whatever it lost is undone below
+        }
+        undoLostChanges();
+    }
+    
+    private void compactJournalIfNeeded() throws IOException {
+        if (!journal.needsCompaction()) {
+            return;
+        }
+        commitLock.writeLock().lock();
+        try {
+            if (journal.needsCompaction()) {
+                writeAndUndoLost();
+                ArrayList<Note> snapshot = new ArrayList<Note>(notesByTitle.size());
+                for (Note note : notesById) {
+                    snapshot.add(note.copy());
+                }
+                journal.compactInBackground(snapshot, nextId.get());
+            }
+        } finally {
+            commitLock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+// Title completion and typo-tolerant lookup: the sorted lower-cased titles are walked as a trie, best
+// branch first, carrying a row of edit distances and dropping branches nothing under which can match.
+class NoteTitleIndex {
+    static final int MAX_BRANCHES = 20000;
+
+    private final TreeMap<String, Note> notesByKey = new TreeMap<String, Note>();
+    private final java.util.concurrent.locks.ReentrantReadWriteLock lock = new java.util.concurrent.locks.ReentrantReadWriteLock();
+
+    private static final class Branch implements Comparable<Branch> {
+        final String prefix;
+        final int[] row;
+        final int[] parentRow;
+        // Closest distance to this prefix or any shorter one
+        final int best;
+        // No key under the prefix can be closer than this
+        final int bound;
+        // An answer at distance bound: just the key equal to the prefix when exact, else every key under it
+        final boolean settled;
+        final boolean exact;
+
+        Branch(String prefix, int[] row, int[] parentRow, int best, int bound, boolean settled, boolean exact) {
+            this.prefix = prefix;
+            this.row = row;
+            this.parentRow = parentRow;
+            this.best = best;
+            this.bound = bound;
+            this.settled = settled;
+            this.exact = exact;
+        }
+
+        // Closest first, then settled, then deepest
+        public int compareTo(Branch other) {
+            if (bound != other.bound) {
+                return Integer.compare(bound, other.bound);
+            }
+            if (settled != other.settled) {
+                return settled ? -1 : 1;
+            }
+            if (prefix.length() != other.prefix.length()) {
+                return Integer.compare(other.prefix.length(), prefix.length());
+            }
+            return prefix.compareTo(other.prefix);
+        }
+    }
+
+    public void add(Note note) {
+        String key = Note.titleKey(note.getTitle());
+        lock.writeLock().lock();
+        try {
+            notesByKey.put(key, note);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // The title is the one the note was indexed under, which it may no longer have
+    public void remove(Note note, String title) {
+        String key = Note.titleKey(title);
+        lock.writeLock().lock();
+        try {
+            if (notesByKey.get(key) == note) {
+                notesByKey.remove(key);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void rebuild(Iterable<Note> notes) {
+        lock.writeLock().lock();
+        try {
+            notesByKey.clear();
+            for (Note note : notes) {
+                notesByKey.put(Note.titleKey(note.getTitle()), note);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            notesByKey.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Note> suggest(String query, int limit) {
+        return lookup(Note.titleKey(query), true, limit);
+    }
+
+    // A note with exactly that title is not included
+    public List<Note> similar(String title, int limit) {
+        return lookup(Note.titleKey(title), false, limit);
+    }
+
+    private List<Note> lookup(String query, boolean prefix, int limit) {
+        ArrayList<Note> matches = new ArrayList<Note>();
+        if (query.isEmpty() || limit <= 0) {
+            return matches;
+        }
+        int n = query.length();
+        int max = maxDistance(query);
+        int[] root = new int[n + 1];
+        for (int i = 0; i <= n; i++) {
+            root[i] = i;
+        }
+        PriorityQueue<Branch> branches = new PriorityQueue<Branch>();
+        branches.add(new Branch("", root, null, n, 0, false, false));
+
+        lock.readLock().lock();
+        try {
+            int expanded = 0;
+            while (!branches.isEmpty() && matches.size() < limit && expanded < MAX_BRANCHES) {
+                Branch branch = branches.poll();
+                if (branch.settled) {
+                    if (branch.exact) {
+                        if (prefix || branch.bound > 0) {
+                            matches.add(notesByKey.get(branch.prefix));
+                        }
+                        continue;
+                    }
+                    for (Note note : notesByKey.subMap(branch.prefix, branch.prefix + Character.MAX_VALUE).values()) {
+                        if (matches.size() == limit) {
+                            break;
+                        }
+                        matches.add(note);
+                    }
+                    continue;
+                }
+                expanded++;
+
+                int distance = prefix ? branch.best : branch.row[n];
+                if (distance <= max && notesByKey.containsKey(branch.prefix)) {
+                    branches.add(new Branch(branch.prefix, null, null, distance, distance, true, true));
+                }
+                int depth = branch.prefix.length();
+                String next = notesByKey.higherKey(branch.prefix);
+                while (next != null && next.startsWith(branch.prefix)) {
+                    char c = next.charAt(depth);
+                    Branch child = extend(query, branch, c, prefix);
+                    if (child.bound <= max) {
+                        branches.add(child);
+                    }
+                    if (c == Character.MAX_VALUE) {
+                        break;
+                    }
+                    next = notesByKey.ceilingKey(branch.prefix + (char) (c + 1));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return matches;
+    }
+
+    // Optimal string alignment distance: Levenshtein plus swapping two adjacent characters
+    private static Branch extend(String query, Branch parent, char c, boolean prefix) {
+        int n = query.length();
+        int depth = parent.prefix.length() + 1;
+        int[] row = new int[n + 1];
+        row[0] = depth;
+        int rowMinimum = depth;
+        for (int i = 1; i <= n; i++) {
+            char q = query.charAt(i - 1);
+            int cost = Math.min(parent.row[i - 1] + (q == c ? 0 : 1), Math.min(parent.row[i], row[i - 1]) + 1);
+            if (i > 1 && depth > 1 && q == parent.prefix.charAt(depth - 2) && query.charAt(i - 2) == c) {
+                cost = Math.min(cost, parent.parentRow[i - 2] + 1);
+            }
+            row[i] = cost;
+            rowMinimum = Math.min(rowMinimum, cost);
+        }
+        if (!prefix) {
+            return new Branch(parent.prefix + c, row, parent.row, row[n], rowMinimum, false, false);
+        }
+        int best = Math.min(parent.best, row[n]);
+        int bound = Math.min(best, rowMinimum);
+        return new Branch(parent.prefix + c, row, parent.row, best, bound, best == bound, false);
+    }
+
+    // Short queries have too many neighbours to tolerate typos
+    static int maxDistance(String key) {
+        int length = key.length();
+        return length < 3 ? 0 : length <= 5 ? 1 : length <= 10 ? 2 : 3;
+    }
+}
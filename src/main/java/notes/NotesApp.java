@@ -0,0 +1,933 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+public class NotesApp {
+    private static final String NOTES_DIR = "notes";
+    // -Dnotes.storage=mapped keeps only titles, dates and body offsets on the heap
+    private static final boolean MAPPED_STORAGE = "mapped".equals(System.getProperty("notes.storage"));
+    // -Dnotes.flushDelayMs=N batches journal writes for up to N ms; 0 fsyncs every change
+    private static final long FLUSH_DELAY_MILLIS = Long.getLong("notes.flushDelayMs", NoteStore.DEFAULT_FLUSH_DELAY_MILLIS);
+    // -Dnotes.compressAbove=N; -1 never compresses
+    private static final int COMPRESS_ABOVE = Integer.getInteger("notes.compressAbove", NoteStore.DEFAULT_COMPRESS_ABOVE);
+    private static NoteStore store = new NoteStore(new File(NOTES_DIR), MAPPED_STORAGE, 
+                                                   FLUSH_DELAY_MILLIS, NoteStore.DEFAULT_FLUSH_BATCH_BYTES, COMPRESS_ABOVE);
+    private static NoteService service = new NoteService(store);
+    private static final int SERVER_THREADS = Integer.getInteger("notes.server.threads", 2 * Runtime.getRuntime().availableProcessors());
+    private static volatile NoteServer server;
+    private static Scanner scanner = new Scanner(System.in);
+    private static final int PAGE_SIZE = 20;
+    private static int listOrder = NoteStore.ORDER_CREATED;
+    private static boolean listDescending = false;
+    
+    public static boolean initializeNotesApp() {
+        boolean existed = store.getDirectory().exists();
+        try {
+            store.open();
+        } catch (IOException e) {
+            System.out.println("Error initializing notes app: " + e.getMessage());
+            return false;
+        }
+        
+        // Flushes changes still waiting for a journal batch
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            public void run() {
+                NoteServer running = server;
+                if (running != null) {
+                    running.stop();
+                }
+                try {
+                    store.close();
+                } catch (IOException e) {
+                    System.out.println("Error saving notes: " + e.getMessage());
+                }
+            }
+        }, "notes-shutdown"));
+        
+        try {
+            NoteMetrics.register();
+        } catch (javax.management.JMException e) {
+            System.out.println("Metrics are not available over JMX: " + e.getMessage());
+        }
+        
+        if (!existed) {
+            System.out.println("Created notes directory: " + NOTES_DIR);
+        }
+        if (store.getMigratedNotes() > 0) {
+            System.out.println("Migrated " + store.getMigratedNotes() + " notes from " 
+                             + new File(store.getDirectory(), NoteStore.LEGACY_FILE).getPath() + " to " + store.getDataFile().getPath());
+        } else if (store.wasCreated()) {
+            System.out.println("Created notes file: " + store.getDataFile().getPath());
+        }
+        printLoadSummary();
+        return true;
+    }
+    
+    public static void loadNotesFromFile() {
+        try {
+            store.load();
+            printLoadSummary();
+        } catch (IOException e) {
+            System.out.println("Error reading notes file: " + e.getMessage());
+        }
+    }
+    
+    private static void printLoadSummary() {
+        if (store.isMapped()) {
+            System.out.println("Loaded " + store.size() + " notes from file (memory-mapped, " + store.getDataFile().length() + " bytes).");
+        } else {
+            System.out.println("Loaded " + store.size() + " notes from file.");
+        }
+        if (store.wasRecoveredFromPrevious()) {
+            System.out.println("Notes file could not be read; recovered from the previous snapshot and its changes.");
+        }
+        if (store.isDamaged()) {
+            System.out.println("Notes file is damaged; the notes after the first damaged record were skipped.");
+        }
+        if (store.getReplayedChanges() > 0) {
+            System.out.println("Replayed " + store.getReplayedChanges() + " changes from " + store.getJournalFile().getPath());
+        }
+    }
+    
+    public static void saveNotesToFile() {
+        try {
+            service.save();
+            System.out.println("Notes saved successfully to " + store.getDataFile().getPath());
+            
+        } catch (IOException e) {
+            System.out.println("Error saving notes: " + e.getMessage());
+        }
+    }
+    
+    // With a prompt, returns the note picked by number or title (null if none is)
+    private static Note browseNotes(String prompt) {
+        // Cursors of the pages before this one
+        ArrayList<Note> previous = new ArrayList<Note>();
+        Note cursor = null;
+        int first = 0;
+        
+        while (true) {
+            NoteStore.Page page = store.page(listOrder, listDescending, cursor, PAGE_SIZE);
+            List<Note> notes = page.getNotes();
+            if (notes.isEmpty() && cursor == null) {
+                System.out.println("\nNo notes found! Create your first note.");
+                return null;
+            }
+            
+            System.out.println("\n--- ALL NOTES (" + describeListOrder() + ") ---");
+            System.out.println(repeatString("-", 80));
+            
+            for (int i = 0; i < notes.size(); i++) {
+                Note note = notes.get(i);
+                System.out.printf("%d. %s  [#%d]\n", (first + i + 1), note.getTitle(), note.getId());
+                System.out.printf("   Created: %s | Modified: %s\n", 
+                                NoteDates.format(NoteDates.SHORT, note.getCreatedMillis()), 
+                                NoteDates.format(NoteDates.SHORT, note.getModifiedMillis()));
+                
+                System.out.printf("   Preview: %s\n", note.getPreviewLine(100));
+                System.out.println();
+            }
+            
+            System.out.println(repeatString("-", 80));
+            if (notes.isEmpty()) {
+                System.out.println("No more notes.");
+            } else {
+                System.out.println("Notes " + (first + 1) + "-" + (first + notes.size()) + " of " + store.size());
+            }
+            System.out.println("N = next page, P = previous page, S = sort order" + (prompt != null ? ", #<id> = note by id" : ""));
+            System.out.print(prompt != null ? prompt : "Press Enter to go back: ");
+            String input = scanner.nextLine().trim();
+            
+            if (input.equalsIgnoreCase("n")) {
+                if (page.getNext() == null) {
+                    System.out.println("This is the last page.");
+                } else {
+                    previous.add(cursor);
+                    cursor = page.getNext();
+                    first += notes.size();
+                }
+            } else if (input.equalsIgnoreCase("p")) {
+                if (previous.isEmpty()) {
+                    System.out.println("This is the first page.");
+                } else {
+                    cursor = previous.remove(previous.size() - 1);
+                    first -= PAGE_SIZE;
+                }
+            } else if (input.equalsIgnoreCase("s")) {
+                chooseListOrder();
+                previous.clear();
+                cursor = null;
+                first = 0;
+            } else if (prompt == null || input.isEmpty()) {
+                return null;
+            } else {
+                return selectNote(input, notes, first);
+            }
+        }
+    }
+    
+    // A number counts from the top of the listing; #<id> picks any note
+    private static Note selectNote(String input, List<Note> page, int first) {
+        if (input.matches("#\\d{1,18}")) {
+            Note note = service.get(Long.parseLong(input.substring(1)));
+            if (note == null) {
+                System.out.println("No note found with id " + input);
+            }
+            return note;
+        }
+        try {
+            int noteIndex = Integer.parseInt(input) - 1 - first;
+            if (noteIndex >= 0 && noteIndex < page.size()) {
+                return page.get(noteIndex);
+            }
+            System.out.println("Invalid note number!");
+            return null;
+        } catch (NumberFormatException e) {
+            Note note = service.get(input);
+            if (note == null) {
+                System.out.println("No note found with title: " + input);
+            }
+            return note;
+        }
+    }
+    
+    private static void chooseListOrder() {
+        System.out.println("1. Title (A-Z)");
+        System.out.println("2. Title (Z-A)");
+        System.out.println("3. Created (oldest first)");
+        System.out.println("4. Created (newest first)");
+        System.out.println("5. Modified (oldest first)");
+        System.out.println("6. Modified (newest first)");
+        System.out.print("Choose sort order (1-6): ");
+        
+        int choice;
+        try {
+            choice = Integer.parseInt(scanner.nextLine().trim());
+        } catch (NumberFormatException e) {
+            choice = 0;
+        }
+        if (choice < 1 || choice > 6) {
+            System.out.println("Invalid sort order!");
+            return;
+        }
+        listOrder = choice <= 2 ? NoteStore.ORDER_TITLE : choice <= 4 ? NoteStore.ORDER_CREATED : NoteStore.ORDER_MODIFIED;
+        listDescending = choice % 2 == 0;
+    }
+    
+    private static String describeListOrder() {
+        switch (listOrder) {
+            case NoteStore.ORDER_TITLE:
+                return listDescending ? "by title, Z-A" : "by title, A-Z";
+            case NoteStore.ORDER_MODIFIED:
+                return listDescending ? "last modified first" : "least recently modified first";
+            default:
+                return listDescending ? "newest first" : "oldest first";
+        }
+    }
+    
+    private static String readContent() {
+        StringBuilder contentBuilder = new StringBuilder();
+        String line;
+        
+        while (!(line = scanner.nextLine()).equals("END")) {
+            if (contentBuilder.length() > 0) {
+                contentBuilder.append("\n");
+            }
+            contentBuilder.append(line);
+        }
+        return contentBuilder.toString();
+    }
+    
+    public static void displayMainMenu() {
+        System.out.println("\n" + repeatString("=", 50));
+        System.out.println("              NOTES MANAGER");
+        System.out.println(repeatString("=", 50));
+        System.out.println("1.  Create New Note");
+        System.out.println("2.  View All Notes");
+        System.out.println("3.  View Note Details");
+        System.out.println("4.  Edit Note");
+        System.out.println("5.  Delete Note");
+        System.out.println("6.  Search Notes");
+        System.out.println("7.  Export Note to File");
+        System.out.println("8.  Import Note from File");
+        System.out.println("9.  Notes Statistics");
+        System.out.println("10. Performance Metrics");
+        System.out.println("11. Save & Exit");
+        System.out.println(repeatString("=", 50));
+        System.out.printf("Total Notes: %d | File: %s\n", store.size(), store.getDataFile().getPath());
+        System.out.println(repeatString("=", 50));
+        System.out.print("Choose an option (1-11): ");
+    }
+    
+    public static void createNewNote() {
+        System.out.println("\n--- CREATE NEW NOTE ---");
+        
+        System.out.print("Enter note title: ");
+        String title = scanner.nextLine().trim();
+        
+        if (title.isEmpty()) {
+            System.out.println("Error: Title cannot be empty!");
+            return;
+        }
+        
+        if (service.get(title) != null) {
+            System.out.println("Error: A note with this title already exists!");
+            return;
+        }
+        
+        List<Note> similar = service.similarTitles(title, 5);
+        if (!similar.isEmpty()) {
+            System.out.println("Notes with similar titles already exist:");
+            for (Note note : similar) {
+                System.out.println("  - " + note.getTitle());
+            }
+            System.out.print("Create this note anyway? (y/n): ");
+            String confirmation = scanner.nextLine().trim().toLowerCase();
+            if (!confirmation.equals("y") && !confirmation.equals("yes")) {
+                System.out.println("Note not created.");
+                return;
+            }
+        }
+        
+        System.out.println("Enter note content (type 'END' on a new line to finish):");
+        String content = readContent();
+        
+        try {
+            Note newNote = service.create(title, content);
+            
+            System.out.println("\nNote created successfully!");
+            System.out.println("Title: " + newNote.getTitle());
+            System.out.println("Content length: " + newNote.getContentLength() + " characters");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Error saving note: " + e.getMessage());
+        }
+    }
+    
+    public static void viewAllNotes() {
+        browseNotes(null);
+    }
+    
+    public static void viewNoteDetails() {
+        if (store.size() == 0) {
+            System.out.println("\nNo notes available!");
+            return;
+        }
+        
+        System.out.println("\n--- VIEW NOTE DETAILS ---");
+        
+        try {
+            Note note = browseNotes("Enter note number or title to view: ");
+            
+            if (note != null) {
+                System.out.println("\n" + repeatString("=", 60));
+                System.out.println("TITLE: " + note.getTitle());
+                System.out.println("ID: #" + note.getId());
+                System.out.println(repeatString("=", 60));
+                
+                System.out.println("Created: " + NoteDates.format(NoteDates.LONG, note.getCreatedMillis()));
+                System.out.println("Modified: " + NoteDates.format(NoteDates.LONG, note.getModifiedMillis()));
+                System.out.println("Content Length: " + note.getContentLength() + " characters");
+                System.out.println(repeatString("-", 60));
+                System.out.println("CONTENT:");
+                System.out.println(note.getContent());
+                System.out.println(repeatString("=", 60));
+            }
+        } catch (Exception e) {
+            System.out.println("Invalid input! Please enter a number.");
+            scanner.nextLine();
+        }
+    }
+    
+    public static void editNote() {
+        if (store.size() == 0) {
+            System.out.println("\nNo notes available to edit!");
+            return;
+        }
+        
+        System.out.println("\n--- EDIT NOTE ---");
+        
+        Note note;
+        int choice;
+        try {
+            note = browseNotes("Enter note number or title to edit: ");
+            if (note == null) {
+                return;
+            }
+            
+            System.out.println("\nCurrent Note:");
+            System.out.println("Title: " + note.getTitle());
+            System.out.println("Content: " + note.getContentPreview(100));
+            
+            System.out.println("\nWhat would you like to edit?");
+            System.out.println("1. Title only");
+            System.out.println("2. Content only");
+            System.out.println("3. Both title and content");
+            System.out.print("Choose option (1-3): ");
+            
+            choice = scanner.nextInt();
+            scanner.nextLine(); 
+        } catch (Exception e) {
+            System.out.println("Invalid input! Please enter a number.");
+            scanner.nextLine();
+            return;
+        }
+        
+        try {
+            switch (choice) {
+                case 1:
+                    System.out.print("Enter new title: ");
+                    service.update(note, scanner.nextLine(), null);
+                    System.out.println("Title updated successfully!");
+                    break;
+                    
+                case 2:
+                    System.out.println("Enter new content (type 'END' on a new line to finish):");
+                    service.update(note, null, readContent());
+                    System.out.println("Content updated successfully!");
+                    break;
+                    
+                case 3:
+                    System.out.print("Enter new title: ");
+                    String title = scanner.nextLine().trim();
+                    if (title.isEmpty()) {
+                        System.out.println("Error: Title cannot be empty!");
+                        return;
+                    }
+                    
+                    Note existing = service.get(title);
+                    
+                    if (existing != null && existing != note) {
+                        System.out.println("Error: A note with this title already exists!");
+                        return;
+                    }
+                    
+                    System.out.println("Enter new content (type 'END' on a new line to finish):");
+                    service.update(note, title, readContent());
+                    System.out.println("Both title and content updated successfully!");
+                    break;
+                    
+                default:
+                    System.out.println("Invalid option!");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error: " + e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Error saving note: " + e.getMessage());
+        }
+    }
+    
+    public static void deleteNote() {
+        if (store.size() == 0) {
+            System.out.println("\nNo notes available to delete!");
+            return;
+        }
+        
+        System.out.println("\n--- DELETE NOTE ---");
+        
+        Note note = browseNotes("Enter note number or title to delete: ");
+        
+        if (note != null) {
+            System.out.println("\nNote to delete:");
+            System.out.println("Title: " + note.getTitle());
+            System.out.println("Created: " + NoteDates.format(NoteDates.LONG, note.getCreatedMillis()));
+            
+            System.out.print("Are you sure you want to delete this note? (y/n): ");
+            String confirmation = scanner.nextLine().trim().toLowerCase();
+            
+            if (confirmation.equals("y") || confirmation.equals("yes")) {
+                try {
+                    service.delete(note.getId());
+                    System.out.println("Note deleted successfully!");
+                } catch (IllegalArgumentException e) {
+                    System.out.println("Error: " + e.getMessage());
+                } catch (IOException e) {
+                    System.out.println("Error saving note deletion: " + e.getMessage());
+                }
+            } else {
+                System.out.println("Delete cancelled.");
+            }
+        }
+    }
+    
+    public static void searchNotes() {
+        if (store.size() == 0) {
+            System.out.println("\nNo notes available to search!");
+            return;
+        }
+        
+        System.out.println("\n--- SEARCH NOTES ---");
+        System.out.println("1. Search by title");
+        System.out.println("2. Search by content");
+        System.out.println("3. Search in both title and content");
+        System.out.println("4. Suggest titles (completes the start of a title, allows typos)");
+        System.out.println("5. Query (fields, dates, sizes, AND/OR/NOT, regular expressions)");
+        System.out.print("Choose search option (1-5): ");
+        
+        int choice;
+        try {
+            choice = scanner.nextInt();
+            scanner.nextLine(); 
+        } catch (Exception e) {
+            System.out.println("Invalid input!");
+            scanner.nextLine();
+            return;
+        }
+        
+        int field;
+        switch (choice) {
+            case 1:
+                field = NoteSearchIndex.FIELD_TITLE;
+                break;
+            case 2:
+                field = NoteSearchIndex.FIELD_CONTENT;
+                break;
+            case 3:
+                field = NoteSearchIndex.FIELD_ALL;
+                break;
+            case 4:
+                suggestTitles();
+                return;
+            case 5:
+                queryNotes();
+                return;
+            default:
+                System.out.println("Invalid search option!");
+                return;
+        }
+        
+        System.out.println("Words must all match; use OR for alternatives, \"quotes\" for phrases, word* for prefixes.");
+        System.out.print("Enter search term: ");
+        String searchTerm = scanner.nextLine().trim();
+        
+        List<Note> results;
+        try {
+            results = service.search(searchTerm, field);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        
+        if (results.isEmpty()) {
+            System.out.println("No notes found matching '" + searchTerm + "'");
+            if (field == NoteSearchIndex.FIELD_TITLE) {
+                List<Note> suggestions = service.suggestTitles(searchTerm, 5);
+                if (!suggestions.isEmpty()) {
+                    System.out.println("Did you mean:");
+                    for (Note note : suggestions) {
+                        System.out.println("  - " + note.getTitle());
+                    }
+                }
+            }
+        } else {
+            System.out.println("\nSearch Results for '" + searchTerm + "':");
+            System.out.println(repeatString("-", 60));
+            
+            for (int i = 0; i < results.size(); i++) {
+                Note note = results.get(i);
+                System.out.printf("%d. %s\n", (i + 1), note.getTitle());
+                
+                System.out.printf("   Preview: %s\n", note.getPreviewLine(80));
+                System.out.println();
+            }
+            
+            System.out.println(repeatString("-", 60));
+            System.out.println("Found " + results.size() + " matching notes.");
+        }
+    }
+    
+    public static void queryNotes() {
+        System.out.println("Fields: title:word content:\"a phrase\" created:2024-03 modified:>=2024-01-15");
+        System.out.println("        length:<500 words:100..200 title:/^todo/i content:/\\d{4}-\\d{2}/");
+        System.out.println("Combine with AND (or a space), OR, NOT (or -) and parentheses.");
+        System.out.print("Enter query: ");
+        String text = scanner.nextLine().trim();
+        
+        NoteQuery query;
+        List<Note> results;
+        try {
+            if (text.isEmpty()) {
+                throw new IllegalArgumentException("Search term cannot be empty!");
+            }
+            query = NoteQuery.compile(text);
+            results = service.query(query);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        
+        System.out.println("Plan: " + query);
+        if (results.isEmpty()) {
+            System.out.println("No notes found matching '" + text + "'");
+            return;
+        }
+        System.out.println("\nQuery Results (most recently modified first):");
+        System.out.println(repeatString("-", 60));
+        for (int i = 0; i < results.size(); i++) {
+            Note note = results.get(i);
+            System.out.printf("%d. %s  (modified %s)\n", (i + 1), note.getTitle(),
+                              NoteDates.format(NoteDates.SHORT, note.getModifiedMillis()));
+            System.out.printf("   Preview: %s\n", note.getPreviewLine(80));
+            System.out.println();
+        }
+        System.out.println(repeatString("-", 60));
+        System.out.println("Found " + results.size() + " matching notes.");
+    }
+    
+    public static void suggestTitles() {
+        System.out.print("Enter the start of a title: ");
+        String query = scanner.nextLine().trim();
+        
+        List<Note> suggestions;
+        try {
+            suggestions = service.suggestTitles(query, 10);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        
+        if (suggestions.isEmpty()) {
+            System.out.println("No titles found like '" + query + "'");
+            return;
+        }
+        System.out.println("\nTitles like '" + query + "':");
+        for (int i = 0; i < suggestions.size(); i++) {
+            Note note = suggestions.get(i);
+            System.out.printf("%d. %s (last modified %s)\n", (i + 1), note.getTitle(),
+                              NoteDates.format(NoteDates.SHORT, note.getModifiedMillis()));
+        }
+    }
+    
+    public static void exportNoteToFile() {
+        if (store.size() == 0) {
+            System.out.println("\nNo notes available to export!");
+            return;
+        }
+        
+        System.out.println("\n--- EXPORT NOTE TO FILE ---");
+        System.out.println("1. Export one note");
+        System.out.println("2. Export all notes");
+        System.out.println("3. Export search results");
+        System.out.print("Choose export option (1-3): ");
+        
+        int choice;
+        try {
+            choice = scanner.nextInt();
+            scanner.nextLine(); 
+        } catch (Exception e) {
+            System.out.println("Invalid input!");
+            scanner.nextLine();
+            return;
+        }
+        
+        if (choice == 2 || choice == 3) {
+            exportNotes(choice == 3);
+            return;
+        }
+        if (choice != 1) {
+            System.out.println("Invalid export option!");
+            return;
+        }
+        
+        Note note = browseNotes("Enter note number or title to export: ");
+        
+        if (note != null) {
+            try {
+                File file = service.export(note);
+                System.out.println("Note exported successfully to: " + file.getPath());
+                
+            } catch (IOException e) {
+                System.out.println("Error exporting note: " + e.getMessage());
+            }
+        }
+    }
+    
+    private static void exportNotes(boolean searchResults) {
+        List<Note> notes;
+        try {
+            if (searchResults) {
+                System.out.print("Enter search term: ");
+                notes = service.search(scanner.nextLine(), NoteSearchIndex.FIELD_ALL);
+            } else {
+                notes = service.getNotes();
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        if (notes.isEmpty()) {
+            System.out.println("No notes to export.");
+            return;
+        }
+        
+        System.out.print("Enter a directory, or a file name ending in .zip or .tar: ");
+        String path = scanner.nextLine().trim();
+        if (path.isEmpty()) {
+            System.out.println("Path cannot be empty!");
+            return;
+        }
+        
+        try {
+            long start = System.currentTimeMillis();
+            BulkNoteExporter.Report report = service.exportAll(notes, new File(path));
+            System.out.println("Exported " + report.getExported() + " notes (" + report.getBytesWritten() + " bytes) to "
+                               + report.getTarget().getPath() + " in " + (System.currentTimeMillis() - start) + " ms");
+            
+        } catch (IOException e) {
+            System.out.println("Error exporting notes: " + e);
+        }
+    }
+    
+    public static void importNoteFromFile() {
+        System.out.println("\n--- IMPORT NOTE FROM FILE ---");
+        System.out.print("Enter the full file or directory path to import: ");
+        String filepath = scanner.nextLine().trim();
+        
+        File file = new File(filepath);
+        if (!file.exists()) {
+            System.out.println("File not found: " + filepath);
+            return;
+        }
+        if (file.isDirectory()) {
+            importNotesFromDirectory(file);
+            return;
+        }
+        
+        System.out.print("Enter title for the imported note: ");
+        String title = scanner.nextLine();
+        
+        int partChars = 0;
+        if (file.length() > StreamingNoteImporter.MAX_SINGLE_NOTE_BYTES) {
+            System.out.printf("The file is %.1f MB, too large for one note. It will be split into linked notes of about %d characters each.\n",
+                              file.length() / (1024.0 * 1024), StreamingNoteImporter.DEFAULT_PART_CHARS);
+            partChars = StreamingNoteImporter.DEFAULT_PART_CHARS;
+        } else if (file.length() > StreamingNoteImporter.DEFAULT_PART_CHARS) {
+            System.out.printf("The file is %.1f MB. Split it into linked notes of about %d characters each? (y/n): ",
+                              file.length() / (1024.0 * 1024), StreamingNoteImporter.DEFAULT_PART_CHARS);
+            String answer = scanner.nextLine().trim().toLowerCase();
+            if (answer.equals("y") || answer.equals("yes")) {
+                partChars = StreamingNoteImporter.DEFAULT_PART_CHARS;
+            }
+        }
+        
+        try {
+            List<Note> imported = service.importFile(file, title, partChars);
+            
+            if (imported.size() == 1) {
+                Note importedNote = imported.get(0);
+                System.out.println("Note imported successfully!");
+                System.out.println("Title: " + importedNote.getTitle());
+                System.out.println("Content length: " + importedNote.getContentLength() + " characters");
+            } else {
+                long characters = 0;
+                for (Note part : imported) {
+                    characters += part.getContentLength();
+                }
+                System.out.println("File imported successfully as " + imported.size() + " linked notes!");
+                System.out.println("First part: " + imported.get(0).getTitle());
+                System.out.println("Last part: " + imported.get(imported.size() - 1).getTitle());
+                System.out.println("Content length: " + characters + " characters");
+            }
+            
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+        } catch (IOException e) {
+            System.out.println("Error importing file: " + e.getMessage());
+        }
+    }
+    
+    private static void importNotesFromDirectory(File directory) {
+        System.out.println("Importing every file under " + directory.getPath() + "...");
+        
+        try {
+            BulkNoteImporter.Report report = service.importDirectory(directory, new BulkNoteImporter.Listener() {
+                private int lastPrinted;
+                
+                public void progress(BulkNoteImporter.Report report) {
+                    if (report.getProcessed() - lastPrinted >= 5000) {
+                        lastPrinted = report.getProcessed();
+                        System.out.println("  " + report.getProcessed() + " files processed, "
+                                           + report.getImported() + " imported");
+                    }
+                }
+            });
+            
+            System.out.println("Imported " + report.getImported() + " of " + report.getFilesFound() + " files.");
+            if (report.getFailed() > 0) {
+                System.out.println(report.getFailed() + " files could not be imported:");
+                for (String error : report.getErrors()) {
+                    System.out.println("  " + error);
+                }
+                if (report.getErrors().size() < report.getFailed()) {
+                    System.out.println("  ... and " + (report.getFailed() - report.getErrors().size()) + " more");
+                }
+            }
+            
+        } catch (IOException e) {
+            System.out.println("Error importing directory: " + e.getMessage());
+        }
+    }
+    
+    public static void displayNotesStatistics() {
+        System.out.println("\n--- NOTES STATISTICS ---");
+        System.out.println(repeatString("=", 40));
+        
+        NoteStatistics stats = service.statistics();
+        if (stats == null) {
+            System.out.println("No notes available for statistics!");
+            return;
+        }
+        
+        int totalNotes = stats.getTotalNotes();
+        long totalCharacters = stats.getTotalCharacters();
+        long totalWords = stats.getTotalWords();
+        Note oldestNote = stats.getOldestNote();
+        Note newestNote = stats.getNewestNote();
+        Note longestNote = stats.getLongestNote();
+        Note shortestNote = stats.getShortestNote();
+        
+        System.out.println("Total Notes: " + totalNotes);
+        System.out.println("Total Characters: " + totalCharacters);
+        System.out.println("Total Words: " + totalWords);
+        System.out.println("Average Characters per Note: " + (totalCharacters / totalNotes));
+        System.out.println("Average Words per Note: " + (totalWords / totalNotes));
+        System.out.println();
+        System.out.println("Oldest Note: " + oldestNote.getTitle() + " (" + NoteDates.format(NoteDates.SHORT, oldestNote.getCreatedMillis()) + ")");
+        System.out.println("Newest Note: " + newestNote.getTitle() + " (" + NoteDates.format(NoteDates.SHORT, newestNote.getCreatedMillis()) + ")");
+        System.out.println("Longest Note: " + longestNote.getTitle() + " (" + longestNote.getContentLength() + " characters)");
+        System.out.println("Shortest Note: " + shortestNote.getTitle() + " (" + shortestNote.getContentLength() + " characters)");
+        System.out.println();
+        System.out.println("Storage Location: " + store.getDataFile().getPath());
+        
+        File notesFile = store.getDataFile();
+        if (notesFile.exists()) {
+            long fileSize = notesFile.length();
+            System.out.println("File Size: " + fileSize + " bytes");
+        }
+        
+        System.out.println(repeatString("=", 40));
+    }
+    
+    public static void displayMetrics() {
+        System.out.println("\n--- PERFORMANCE METRICS ---");
+        System.out.println(repeatString("=", 80));
+        String report = NoteMetrics.report();
+        System.out.print(report);
+        System.out.println(repeatString("=", 80));
+        
+        System.out.print("Save this report to a file (leave empty to skip): ");
+        String path = scanner.nextLine().trim();
+        if (path.isEmpty()) {
+            return;
+        }
+        try {
+            java.nio.file.Files.write(new File(path).toPath(), report.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            System.out.println("Metrics saved to: " + path);
+        } catch (IOException e) {
+            System.out.println("Error saving metrics: " + e.getMessage());
+        }
+    }
+    
+    private static String repeatString(String str, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(str);
+        }
+        return sb.toString();
+    }
+    
+    public static boolean runServer(int port) {
+        try {
+            server = new NoteServer(service, port, SERVER_THREADS);
+        } catch (IOException e) {
+            System.out.println("Error starting server: " + e.getMessage());
+            return false;
+        }
+        server.start();
+        System.out.println("Serving notes at http://localhost:" + server.getPort() + "/ with "
+                           + server.getThreads() + " worker threads.");
+        System.out.println("Press Ctrl+C to save and stop.");
+        return true;
+    }
+    
+    public static void main(String[] args) {
+        System.out.println("Welcome to Java Notes Manager!");
+        System.out.println("==============================");
+        
+        boolean opened = initializeNotesApp();
+        
+        if (args.length > 0 && args[0].equals("--server")) {
+            if (!opened || !runServer(args.length > 1 ? Integer.parseInt(args[1]) : NoteServer.DEFAULT_PORT)) {
+                System.exit(1);
+            }
+            return;
+        }
+        
+        int choice;
+        
+        do {
+            displayMainMenu();
+            
+            try {
+                choice = scanner.nextInt();
+                scanner.nextLine(); 
+                
+                switch (choice) {
+                    case 1:
+                        createNewNote();
+                        break;
+                    case 2:
+                        viewAllNotes();
+                        break;
+                    case 3:
+                        viewNoteDetails();
+                        break;
+                    case 4:
+                        editNote();
+                        break;
+                    case 5:
+                        deleteNote();
+                        break;
+                    case 6:
+                        searchNotes();
+                        break;
+                    case 7:
+                        exportNoteToFile();
+                        break;
+                    case 8:
+                        importNoteFromFile();
+                        break;
+                    case 9:
+                        displayNotesStatistics();
+                        break;
+                    case 10:
+                        displayMetrics();
+                        break;
+                    case 11:
+                        System.out.println("\nSaving notes...");
+                        saveNotesToFile();
+                        System.out.println("Thank you for using Notes Manager!");
+                        System.out.println("Goodbye!");
+                        break;
+                    default:
+                        System.out.println("Invalid choice! Please select 1-11.");
+                }
+                
+                if (choice >= 1 && choice <= 10) {
+                    System.out.println("\nPress Enter to continue...");
+                    scanner.nextLine();
+                }
+                
+            } catch (Exception e) {
+                System.out.println("Error: Invalid input! Please enter a number (1-11).");
+                scanner.nextLine(); 
+                choice = 0; 
+            }
+            
+        } while (choice != 11);
+        
+        scanner.close();
+    }
+}
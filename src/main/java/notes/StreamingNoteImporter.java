@@ -0,0 +1,256 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+// Imports a file of any size chunk by chunk, normalized like readFileContent() and compressed into a
+// spool file. Parts link to each other and are added together once the whole file is read.
+class StreamingNoteImporter {
+    static final int CHUNK_SIZE = 64 * 1024;
+    static final int DEFAULT_PART_CHARS = 1024 * 1024;
+    // Indexing decodes a whole body at once, so larger files are always split
+    static final long MAX_SINGLE_NOTE_BYTES = 16L * DEFAULT_PART_CHARS;
+    static final int TEXT_LIMIT = CHUNK_SIZE;
+    // A part ends at the first line break after partChars characters, or this many characters later
+    static final int LINE_SLACK = 64 * 1024;
+
+    private final NoteService service;
+    // 0 for one note
+    private final int partChars;
+
+    // Whitespace since the last text is held back until more text follows; past a chunk it spills to a spool file
+    private boolean started;
+    private boolean afterReturn;
+    private final StringBuilder whitespace = new StringBuilder();
+    private File whitespaceFile;
+    private OutputStream whitespaceOut;
+
+    private String base;
+    private final List<Note> parts = new ArrayList<Note>();
+    private StringBuilder text;
+    private CompressedBody.Writer compressed;
+    private long partLength;
+    private boolean partFull;
+
+    StreamingNoteImporter(NoteService service, int partChars) {
+        this.service = service;
+        this.partChars = partChars;
+    }
+
+    List<Note> run(File file, String title) throws IOException {
+        base = service.importTitle(title);
+        if (partChars > 0 && !partsFree(file.length() / partChars + 1)) {
+            base = base + "_" + System.currentTimeMillis();
+        }
+        java.nio.channels.FileChannel channel = new FileInputStream(file).getChannel();
+        try {
+            java.nio.charset.CharsetDecoder decoder = java.nio.charset.Charset.defaultCharset().newDecoder()
+                .onMalformedInput(java.nio.charset.CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(java.nio.charset.CodingErrorAction.REPLACE);
+            java.nio.ByteBuffer bytes = java.nio.ByteBuffer.allocateDirect(CHUNK_SIZE);
+            java.nio.CharBuffer chars = java.nio.CharBuffer.allocate(CHUNK_SIZE);
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                int read = channel.read(bytes);
+                if (read < 0) {
+                    endOfInput = true;
+                } else {
+                    NoteMetrics.BYTES_READ.add(read);
+                }
+                bytes.flip();
+                decoder.decode(bytes, chars, endOfInput);
+                if (endOfInput) {
+                    decoder.flush(chars);
+                }
+                bytes.compact();
+                accept(chars.array(), chars.position());
+                chars.clear();
+            }
+            if (!started) {
+                throw new IllegalArgumentException("File is empty!");
+            }
+            finishPart(false);
+            if (partChars == 0) {
+                service.addAllImported(parts);
+            } else if (!service.getStore().addAllOrNone(parts)) {
+                throw new IllegalArgumentException("A note titled like a part of '" + base + "' was created during the import, "
+                                                   + "so nothing was imported");
+            }
+            return parts;
+        } finally {
+            channel.close();
+            if (compressed != null) {
+                compressed.close();
+            }
+            discardWhitespace();
+        }
+    }
+
+    // A file of n bytes decodes to at most n characters
+    private boolean partsFree(long maxParts) {
+        for (int part = 1; part <= maxParts; part++) {
+            if (service.get(partTitle(part)) != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // \r\n, \r and \n all become \n; leading whitespace is dropped
+    private void accept(char[] chars, int length) throws IOException {
+        int count = 0;
+        int lastText = -1;
+        for (int i = 0; i < length; i++) {
+            char c = chars[i];
+            if (c == '\n' && afterReturn) {
+                afterReturn = false;
+                continue;
+            }
+            afterReturn = c == '\r';
+            if (c <= ' ') {
+                if (started) {
+                    chars[count++] = c == '\r' ? '\n' : c;
+                }
+                continue;
+            }
+            started = true;
+            lastText = count;
+            chars[count++] = c;
+        }
+        if (lastText < 0) {
+            holdWhitespace(chars, 0, count);
+            return;
+        }
+        flushWhitespace();
+        emit(chars, 0, lastText + 1);
+        holdWhitespace(chars, lastText + 1, count - lastText - 1);
+    }
+
+    private void holdWhitespace(char[] chars, int offset, int length) throws IOException {
+        whitespace.append(chars, offset, length);
+        if (whitespace.length() >= CHUNK_SIZE) {
+            if (whitespaceOut == null) {
+                whitespaceFile = service.getStore().newSpoolFile();
+                whitespaceOut = new BufferedOutputStream(new FileOutputStream(whitespaceFile), CHUNK_SIZE);
+            }
+            for (int i = 0; i < whitespace.length(); i++) {
+                whitespaceOut.write(whitespace.charAt(i));
+            }
+            whitespace.setLength(0);
+        }
+    }
+
+    private void flushWhitespace() throws IOException {
+        if (whitespaceOut != null) {
+            whitespaceOut.close();
+            whitespaceOut = null;
+            InputStream in = new BufferedInputStream(new FileInputStream(whitespaceFile), CHUNK_SIZE);
+            try {
+                char[] held = new char[CHUNK_SIZE];
+                int length = 0;
+                int c;
+                while ((c = in.read()) >= 0) {
+                    held[length++] = (char) c;
+                    if (length == held.length) {
+                        emit(held, 0, length);
+                        length = 0;
+                    }
+                }
+                emit(held, 0, length);
+            } finally {
+                in.close();
+                discardWhitespace();
+            }
+        }
+        if (whitespace.length() > 0) {
+            char[] held = new char[whitespace.length()];
+            whitespace.getChars(0, held.length, held, 0);
+            whitespace.setLength(0);
+            emit(held, 0, held.length);
+        }
+    }
+
+    // A full part is finished only when more text arrives, so the last part never links to a next one
+    private void emit(char[] chars, int start, int end) throws IOException {
+        while (start < end) {
+            if (text == null && compressed == null) {
+                startPart();
+            } else if (partFull) {
+                finishPart(true);
+                startPart();
+            }
+            int cut = end;
+            if (partChars > 0) {
+                int from = start + (int) Math.max(0, Math.min(end - start, partChars - partLength - 1));
+                int limit = start + (int) Math.min(end - start, (long) partChars + LINE_SLACK - partLength);
+                for (int i = from; i < limit; i++) {
+                    if (chars[i] == '\n') {
+                        cut = i + 1;
+                        partFull = true;
+                        break;
+                    }
+                }
+                if (!partFull && limit < end) {
+                    cut = limit;
+                    partFull = true;
+                }
+            }
+            append(chars, start, cut - start);
+            partLength += cut - start;
+            start = cut;
+        }
+    }
+
+    private void discardWhitespace() throws IOException {
+        if (whitespaceOut != null) {
+            whitespaceOut.close();
+            whitespaceOut = null;
+        }
+        if (whitespaceFile != null) {
+            whitespaceFile.delete();
+            whitespaceFile = null;
+        }
+    }
+
+    private void startPart() throws IOException {
+        text = new StringBuilder();
+        compressed = null;
+        partLength = 0;
+        partFull = false;
+        if (!parts.isEmpty()) {
+            append("--- continued from: " + parts.get(parts.size() - 1).getTitle() + " ---\n");
+        }
+    }
+
+    private void finishPart(boolean more) throws IOException {
+        if (more) {
+            append("\n--- continued in: " + partTitle(parts.size() + 2) + " ---");
+        }
+        Object body = compressed != null ? compressed.finish() : text.toString();
+        compressed = null;
+        text = null;
+        parts.add(NoteService.newNote(partChars == 0 ? base : partTitle(parts.size() + 1), body));
+    }
+
+    private void append(char[] chars, int offset, int length) throws IOException {
+        if (compressed != null) {
+            compressed.append(chars, offset, length);
+            return;
+        }
+        text.append(chars, offset, length);
+        if (text.length() > TEXT_LIMIT) {
+            compressed = new CompressedBody.Writer(service.getStore().newSpoolFile());
+            compressed.append(text.toString());
+            text = null;
+        }
+    }
+
+    private void append(String s) throws IOException {
+        char[] chars = s.toCharArray();
+        append(chars, 0, chars.length);
+    }
+
+    private String partTitle(int part) {
+        return base + " (part " + part + ")";
+    }
+}
@@ -0,0 +1,153 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoteFileTest {
+    @TempDir
+    File directory;
+
+    private static Note note(long id, String title, Object body, long created, long modified) {
+        Note note = body instanceof CompressedBody ? new Note(title, (CompressedBody) body, created, modified)
+                                                   : new Note(title, (String) body, created, modified);
+        note.id = id;
+        return note;
+    }
+
+    private static String repeat(String text, int times) {
+        StringBuilder repeated = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            repeated.append(text);
+        }
+        return repeated.toString();
+    }
+
+    // Raw, deflated and shared bodies, with text the old marker-based format could not hold
+    private static List<Note> sample() {
+        String shared = repeat("the same long body\n", 100);
+        CompressedBody compressed = CompressedBody.compress(repeat("compressible text ", 500));
+        assertNotNull(compressed);
+        List<Note> notes = new ArrayList<Note>();
+        notes.add(note(1, "plain", "short body", 1000, 2000));
+        notes.add(note(2, "unicode é中😀", "line one\nCONTENT:\n---END-NOTE---\n😀", 3000, 4000));
+        notes.add(note(5, "compressed", compressed, 5000, 6000));
+        notes.add(note(7, "shared one", shared, 7000, 8000));
+        notes.add(note(8, "shared two", shared, 9000, 10000));
+        notes.add(note(9, "empty", "", 11000, 12000));
+        return notes;
+    }
+
+    private static void assertNotesEqual(List<Note> expected, List<Note> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Note a = expected.get(i);
+            Note b = actual.get(i);
+            assertEquals(a.id, b.id);
+            assertEquals(a.getTitle(), b.getTitle());
+            assertEquals(a.getContent(), b.getContent());
+            assertEquals(a.getContentLength(), b.getContentLength());
+            assertEquals(a.getCreatedMillis(), b.getCreatedMillis());
+            assertEquals(a.getModifiedMillis(), b.getModifiedMillis());
+        }
+    }
+
+    private static List<Note> read(File file, long[] nextId, boolean[] damaged) throws IOException {
+        List<Note> notes = new ArrayList<Note>();
+        NoteFileReader reader = new NoteFileReader(file);
+        try {
+            Note note;
+            while ((note = reader.next()) != null) {
+                notes.add(note);
+            }
+            nextId[0] = reader.getNextId();
+            damaged[0] = reader.isDamaged();
+        } finally {
+            reader.close();
+        }
+        return notes;
+    }
+
+    @Test
+    void roundTripsEveryBodyEncoding() throws IOException {
+        File file = new File(directory, "notes.dat");
+        List<Note> notes = sample();
+        NoteJournal.writeSnapshot(file, notes, 42);
+
+        long[] nextId = new long[1];
+        boolean[] damaged = new boolean[1];
+        assertNotesEqual(notes, read(file, nextId, damaged));
+        assertEquals(42, nextId[0]);
+        assertFalse(damaged[0]);
+
+        MappedNoteFile mapped = MappedNoteFile.open(file);
+        assertNotesEqual(notes, mapped.readNotes());
+        assertEquals(42, mapped.getNextId());
+        assertFalse(mapped.isDamaged());
+    }
+
+    @Test
+    void storesASharedBodyOnce() throws IOException {
+        File file = new File(directory, "notes.dat");
+        List<Note> notes = sample();
+        NoteJournal.writeSnapshot(file, notes, 42);
+        long withShared = file.length();
+
+        notes.set(4, note(8, "shared two", new String(notes.get(3).getContent()), 9000, 10000));
+        notes.set(3, note(7, "shared one", new String(notes.get(3).getContent()), 7000, 8000));
+        NoteJournal.writeSnapshot(file, notes, 42);
+        assertTrue(withShared < file.length() - 1000);
+    }
+
+    @Test
+    void stopsAtATornRecord() throws IOException {
+        File file = new File(directory, "notes.dat");
+        List<Note> notes = sample();
+        NoteJournal.writeSnapshot(file, notes, 42);
+        RandomAccessFile torn = new RandomAccessFile(file, "rw");
+        torn.setLength(file.length() - 3);
+        torn.close();
+
+        long[] nextId = new long[1];
+        boolean[] damaged = new boolean[1];
+        assertNotesEqual(notes.subList(0, notes.size() - 1), read(file, nextId, damaged));
+        assertTrue(damaged[0]);
+
+        MappedNoteFile mapped = MappedNoteFile.open(file);
+        assertEquals(notes.size() - 1, mapped.readNotes().size());
+        assertTrue(mapped.isDamaged());
+    }
+
+    @Test
+    void stopsAtACorruptRecord() throws IOException {
+        File file = new File(directory, "notes.dat");
+        List<Note> notes = sample();
+        NoteJournal.writeSnapshot(file, notes, 42);
+        RandomAccessFile corrupt = new RandomAccessFile(file, "rw");
+        corrupt.seek(NoteFileWriter.HEADER_LENGTH + 4 + 8 + 8 + 8 + 4);
+        corrupt.write('P' + 1);
+        corrupt.close();
+
+        long[] nextId = new long[1];
+        boolean[] damaged = new boolean[1];
+        assertTrue(read(file, nextId, damaged).isEmpty());
+        assertTrue(damaged[0]);
+    }
+
+    @Test
+    void rejectsAnotherFile() throws IOException {
+        File file = new File(directory, "other.dat");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("not a notes file at all".getBytes("UTF-8"));
+        out.close();
+        try {
+            new NoteFileReader(file).close();
+            fail("read a file without the magic number");
+        } catch (IOException expected) {
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoteImporterTest {
+    @TempDir
+    File directory;
+
+    private File source;
+    private NoteStore store;
+    private NoteService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        source = new File(directory, "source");
+        source.mkdirs();
+        store = new NoteStore(new File(directory, "store"), false, 0, 0);
+        store.open();
+        service = new NoteService(store);
+    }
+
+    private static File write(File file, String text) throws IOException {
+        file.getParentFile().mkdirs();
+        Writer out = new FileWriter(file);
+        out.write(text);
+        out.close();
+        return file;
+    }
+
+    // Of the note with the title and of those it was suffixed from
+    private List<String> contents(String title) {
+        List<String> contents = new ArrayList<String>();
+        for (Note note : store.getNotes()) {
+            if (note.getTitle().equals(title) || note.getTitle().startsWith(title + "_")) {
+                contents.add(note.getContent());
+            }
+        }
+        Collections.sort(contents);
+        return contents;
+    }
+
+    private Map<Long, String> reopened() throws IOException {
+        store.close();
+        NoteStore again = new NoteStore(store.getDirectory(), false, 0, 0);
+        again.open();
+        Map<Long, String> state = NoteJournalTest.state(again);
+        again.close();
+        return state;
+    }
+
+    @Test
+    void importsATreeOneNotePerFile() throws IOException {
+        for (int i = 0; i < 300; i++) {
+            write(new File(source, "n" + i + ".txt"), "body " + i + "\r\n\r\n");
+        }
+        write(new File(source, "dup.txt"), "one");
+        write(new File(source, "dup.md"), "two");
+        write(new File(source, "sub/dup.txt"), "three");
+        write(new File(source, " .txt"), "untitled");
+        store.add(new Note("n3", "already here"));
+
+        final List<Integer> progress = new ArrayList<Integer>();
+        BulkNoteImporter.Report report = new BulkNoteImporter(service, 4, 16).run(source, new BulkNoteImporter.Listener() {
+            public void progress(BulkNoteImporter.Report report) {
+                progress.add(report.getProcessed());
+            }
+        });
+
+        assertEquals(304, report.getFilesFound());
+        assertEquals(304, report.getProcessed());
+        assertEquals(304, report.getImported());
+        assertEquals(0, report.getFailed());
+        assertTrue(report.getErrors().isEmpty());
+        assertEquals(Integer.valueOf(304), progress.get(progress.size() - 1));
+        assertEquals(305, store.getNotes().size());
+        assertEquals("body 7", store.findByTitle("n7").getContent());
+        assertEquals(Arrays.asList("already here", "body 3"), contents("n3"));
+        assertEquals(Arrays.asList("one", "three", "two"), contents("dup"));
+        int untitled = 0;
+        for (Note note : store.getNotes()) {
+            if (note.getTitle().startsWith("Imported_Note_")) {
+                assertEquals("untitled", note.getContent());
+                untitled++;
+            }
+        }
+        assertEquals(1, untitled);
+        assertEquals(NoteJournalTest.state(store), reopened());
+    }
+
+    @Test
+    void refusesAMissingDirectory() {
+        try {
+            new BulkNoteImporter(service).run(new File(directory, "missing"), null);
+            fail("imported a missing directory");
+        } catch (IOException expected) {
+        }
+        assertTrue(store.getNotes().isEmpty());
+    }
+
+    @Test
+    void streamsAFileIntoOneNote() throws IOException {
+        StringBuilder text = new StringBuilder("\n\n  \t");
+        for (int i = 0; i < 20000; i++) {
+            text.append("word").append(i).append(i % 10 == 0 ? "\r\n" : i % 7 == 0 ? "\r" : " ");
+        }
+        // Trailing whitespace longer than a chunk is trimmed all the same
+        for (int i = 0; i < 3 * StreamingNoteImporter.CHUNK_SIZE; i++) {
+            text.append(i % 5 == 0 ? "\r\n" : " ");
+        }
+        File file = write(new File(source, "large.txt"), text.toString());
+
+        Note note = service.importFile(file, "large");
+        assertEquals(NoteService.readFileContent(file), note.getContent());
+        assertTrue(note.getContent().startsWith("word0\nword1 word2"));
+        assertTrue(note.getContent().endsWith("word19999"));
+        assertEquals(0, store.getDirectory().list(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(NoteStore.SPOOL_SUFFIX);
+            }
+        }).length);
+        assertEquals(NoteJournalTest.state(store), reopened());
+    }
+
+    @Test
+    void keepsWhitespaceBetweenChunks() throws IOException {
+        StringBuilder text = new StringBuilder("start");
+        for (int i = 0; i < 2 * StreamingNoteImporter.CHUNK_SIZE; i++) {
+            text.append(i % 3 == 0 ? '\n' : ' ');
+        }
+        text.append("end");
+        File file = write(new File(source, "gap.txt"), text.toString());
+
+        Note note = service.importFile(file, "gap");
+        assertEquals(NoteService.readFileContent(file), note.getContent());
+        assertTrue(note.getContent().startsWith("start\n"));
+        assertTrue(note.getContent().endsWith(" end"));
+    }
+
+    @Test
+    void splitsAFileIntoLinkedParts() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        File file = write(new File(source, "parts.txt"), text.toString());
+
+        List<Note> parts = service.importFile(file, "book", 8000);
+        assertTrue(parts.size() > 3);
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < parts.size(); i++) {
+            Note part = parts.get(i);
+            assertEquals("book (part " + (i + 1) + ")", part.getTitle());
+            assertSame(part, store.findByTitle(part.getTitle()));
+            String content = part.getContent();
+            if (i > 0) {
+                String link = "--- continued from: " + parts.get(i - 1).getTitle() + " ---\n";
+                assertTrue(content.startsWith(link));
+                content = content.substring(link.length());
+            }
+            if (i < parts.size() - 1) {
+                String link = "\n--- continued in: book (part " + (i + 2) + ") ---";
+                assertTrue(content.endsWith(link));
+                content = content.substring(0, content.length() - link.length());
+            }
+            joined.append(content);
+        }
+        assertEquals(NoteService.readFileContent(file), joined.toString());
+    }
+
+    @Test
+    void importsNoPartsWhenAPartTitleIsTaken() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        File file = write(new File(source, "parts.txt"), text.toString());
+        store.add(new Note("book (part 3)", "in the way"));
+
+        List<Note> parts = service.importFile(file, "book", 8000);
+        String first = parts.get(0).getTitle();
+        assertTrue(first.startsWith("book_") && first.endsWith(" (part 1)"), first);
+        assertEquals(first.replace("(part 1)", "(part 2)"), parts.get(1).getTitle());
+        assertEquals("in the way", store.findByTitle("book (part 3)").getContent());
+    }
+
+    @Test
+    void suffixesATakenTitle() throws IOException {
+        store.add(new Note("taken", "first"));
+        File file = write(new File(source, "taken.txt"), "second");
+        Note note = service.importFile(file, "taken");
+        assertTrue(note.getTitle().startsWith("taken_"));
+        assertEquals("second", note.getContent());
+        assertEquals("first", store.findByTitle("taken").getContent());
+    }
+}
@@ -0,0 +1,173 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoteJournalTest {
+    @TempDir
+    File directory;
+
+    private NoteStore open(boolean mapped) throws IOException {
+        NoteStore store = new NoteStore(directory, mapped, 0, 0);
+        store.open();
+        return store;
+    }
+
+    static Map<Long, String> state(NoteStore store) {
+        TreeMap<Long, String> notes = new TreeMap<Long, String>();
+        for (Note note : store.getNotes()) {
+            notes.put(note.id, note.getTitle() + "|" + note.getContent() + "|" + note.getCreatedMillis() + "|" + note.getModifiedMillis());
+        }
+        return notes;
+    }
+
+    // Adds, renames, edits and deletes drawn from a few titles, with a checkpoint halfway
+    private static void mutate(NoteStore store, long seed) throws IOException {
+        Random random = new Random(seed);
+        String[] titles = { "a", "b", "c", "d", "e", "A", "B" };
+        for (int i = 0; i < 300; i++) {
+            String title = titles[random.nextInt(titles.length)];
+            Note note = store.findByTitle(title);
+            int operation = random.nextInt(3);
+            if (operation == 0 && note == null) {
+                store.add(new Note(title, "created " + i));
+            } else if (operation == 1 && note != null) {
+                store.update(note, titles[random.nextInt(titles.length)], random.nextBoolean() ? null : "changed " + i);
+            } else if (operation == 2 && note != null) {
+                store.remove(note);
+            }
+            if (i == 150) {
+                store.checkpoint();
+            }
+        }
+        store.flush();
+    }
+
+    @Test
+    void replaysTheJournalOverTheSnapshot() throws IOException {
+        for (boolean mapped : new boolean[] { false, true }) {
+            for (long seed = 1; seed <= 3; seed++) {
+                for (File file : directory.listFiles()) {
+                    file.delete();
+                }
+                NoteStore store = open(mapped);
+                mutate(store, seed);
+                Map<Long, String> expected = state(store);
+                store.close();
+
+                NoteStore reopened = open(mapped);
+                assertEquals(expected, state(reopened), "seed " + seed);
+                assertTrue(reopened.getReplayedChanges() > 0);
+                assertFalse(reopened.isDamaged());
+                reopened.close();
+            }
+        }
+    }
+
+    @Test
+    void replaysALeftoverCompactionSegmentOverASnapshotThatHasIt() throws IOException {
+        NoteStore store = open(false);
+        mutate(store, 7);
+        Map<Long, String> expected = state(store);
+        byte[] journal = java.nio.file.Files.readAllBytes(store.getJournalFile().toPath());
+        store.checkpoint();
+        store.close();
+
+        java.nio.file.Files.write(new File(directory, NoteStore.JOURNAL_FILE + ".compacting").toPath(), journal);
+        NoteStore reopened = open(false);
+        assertEquals(expected, state(reopened));
+        reopened.close();
+    }
+
+    @Test
+    void cutsATornTailAndKeepsAppending() throws IOException {
+        NoteStore store = open(false);
+        store.add(new Note("first", "one"));
+        store.add(new Note("second", "two"));
+        store.flush();
+        long intact = store.getJournalFile().length();
+        store.add(new Note("third", "three"));
+        store.flush();
+        store.close();
+
+        File journal = new File(directory, NoteStore.JOURNAL_FILE);
+        RandomAccessFile file = new RandomAccessFile(journal, "rw");
+        file.setLength(journal.length() - 5);
+        file.close();
+
+        NoteStore reopened = open(false);
+        assertNotNull(reopened.findByTitle("first"));
+        assertNotNull(reopened.findByTitle("second"));
+        assertNull(reopened.findByTitle("third"));
+        assertEquals(intact, journal.length());
+        reopened.add(new Note("fourth", "four"));
+        reopened.flush();
+        reopened.close();
+
+        NoteStore again = open(false);
+        assertEquals(3, again.getNotes().size());
+        assertEquals("four", again.findByTitle("fourth").getContent());
+        again.close();
+    }
+
+    @Test
+    void cutsACorruptTail() throws IOException {
+        NoteStore store = open(false);
+        store.add(new Note("kept", "body"));
+        store.flush();
+        store.close();
+
+        File journal = new File(directory, NoteStore.JOURNAL_FILE);
+        long intact = journal.length();
+        FileOutputStream out = new FileOutputStream(journal, true);
+        out.write(new byte[] { 0, 0, 0, 12, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 0, 0, 0, 0, 0, 0, 0, 0 });
+        out.close();
+
+        NoteStore reopened = open(false);
+        assertEquals("body", reopened.findByTitle("kept").getContent());
+        assertEquals(intact, journal.length());
+        reopened.close();
+    }
+
+    @Test
+    void fallsBackToThePreviousGeneration() throws IOException {
+        NoteStore store = open(false);
+        store.add(new Note("old", "from the first generation"));
+        store.checkpoint();
+        store.add(new Note("new", "from the journal"));
+        store.checkpoint();
+        Map<Long, String> expected = state(store);
+        store.close();
+
+        RandomAccessFile snapshot = new RandomAccessFile(new File(directory, NoteStore.DATA_FILE), "rw");
+        snapshot.writeInt(0);
+        snapshot.close();
+
+        NoteStore reopened = open(false);
+        assertTrue(reopened.wasRecoveredFromPrevious());
+        assertEquals(expected, state(reopened));
+        reopened.close();
+    }
+
+    @Test
+    void keepsIdsOfDeletedNotesRetired() throws IOException {
+        NoteStore store = open(false);
+        Note note = new Note("gone", "x");
+        store.add(note);
+        long id = note.id;
+        store.remove(note);
+        store.checkpoint();
+        store.close();
+
+        NoteStore reopened = open(false);
+        Note next = new Note("next", "y");
+        reopened.add(next);
+        assertTrue(next.id > id);
+        reopened.close();
+    }
+}
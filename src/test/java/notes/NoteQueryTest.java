@@ -0,0 +1,144 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoteQueryTest {
+    @TempDir
+    File directory;
+
+    private NoteStore store;
+
+    private static long at(String date) {
+        return NoteDates.parse(NoteDates.STORAGE, date);
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        store = new NoteStore(directory, false, 0, 0);
+        store.open();
+        store.add(new Note("alpha", "red green", at("2023-12-31 23:59:59"), at("2024-01-01 00:00:00")));
+        store.add(new Note("beta", "red blue OR", at("2024-01-01 00:00:00"), at("2024-02-10 12:00:00")));
+        store.add(new Note("gamma", "green blue and more words here", at("2024-03-15 08:30:00"), at("2024-03-15 08:30:00")));
+        store.add(new Note("Delta Notes", "e-mail Draft\nsecond line", at("2024-12-31 23:59:59"), at("2025-01-01 00:00:00")));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        store.close();
+    }
+
+    private List<String> query(String query) {
+        List<String> titles = new ArrayList<String>();
+        for (Note note : store.query(NoteQuery.compile(query))) {
+            titles.add(note.getTitle());
+        }
+        Collections.sort(titles);
+        return titles;
+    }
+
+    private static List<String> titles(String... titles) {
+        return Arrays.asList(titles);
+    }
+
+    private static void assertRejected(String query, String message) {
+        try {
+            NoteQuery.compile(query);
+            fail("compiled " + query);
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains(message), e.getMessage());
+        }
+    }
+
+    @Test
+    void bindsNotTightestThenAndThenOr() {
+        assertEquals(titles("alpha", "gamma"), query("red green OR blue green"));
+        assertEquals(titles("gamma"), query("NOT red green"));
+        assertEquals(titles("Delta Notes", "gamma"), query("-red"));
+        assertEquals(titles("alpha", "beta", "gamma"), query("(red OR blue) (green OR red)"));
+        assertEquals(titles("alpha", "beta"), query("red AND (green OR blue)"));
+        assertEquals(titles("Delta Notes", "alpha", "beta", "gamma"), query("red OR NOT red"));
+    }
+
+    @Test
+    void readsOperatorWordsInsideValuesAsText() {
+        assertEquals(titles("beta"), query("content:OR"));
+        assertEquals(titles("beta", "gamma"), query("blue (and OR or)"));
+    }
+
+    @Test
+    void limitsTermsToAField() {
+        assertEquals(titles("Delta Notes"), query("title:notes"));
+        assertEquals(titles(), query("content:notes"));
+        assertEquals(titles("Delta Notes"), query("title:del*"));
+        assertEquals(titles("Delta Notes"), query("content:\"e-mail draft\""));
+    }
+
+    @Test
+    void matchesDatesAsPeriodsInLocalTime() {
+        assertEquals(titles("alpha"), query("created:2023"));
+        assertEquals(titles("Delta Notes", "beta", "gamma"), query("created:2024"));
+        assertEquals(titles("beta"), query("created:2024-01-01"));
+        assertEquals(titles("alpha", "beta"), query("modified:2024-01..2024-02"));
+        assertEquals(titles("Delta Notes"), query("modified:>2024"));
+        assertEquals(titles("Delta Notes", "gamma"), query("created:>=2024-03"));
+        assertEquals(titles("alpha"), query("created:<2024"));
+    }
+
+    @Test
+    void mergesRangesOnOneAttribute() {
+        assertEquals(titles("gamma"), query("length:>25 length:<40"));
+        assertEquals(titles(), query("length:>40 length:<20"));
+        assertEquals(titles("gamma"), query("words:>=5"));
+        assertEquals(titles("alpha", "beta"), query("words:2..3"));
+    }
+
+    @Test
+    void keepsExtremeBoundsFromOverflowing() {
+        assertEquals(titles(), query("length:>9223372036854775807"));
+        assertEquals(titles(), query("length:<-9223372036854775808"));
+        assertEquals(titles("Delta Notes", "alpha", "beta", "gamma"), query("length:>=0"));
+    }
+
+    @Test
+    void matchesRegularExpressionsWithFlags() {
+        assertEquals(titles("Delta Notes"), query("/draft/i"));
+        assertEquals(titles(), query("/draft/"));
+        assertEquals(titles("Delta Notes"), query("content:/^second/m"));
+        assertEquals(titles("Delta Notes"), query("content:/Draft.second/s"));
+        assertEquals(titles("alpha", "beta"), query("title:/^(alpha|beta)$/"));
+    }
+
+    @Test
+    void rejectsMalformedQueries() {
+        assertRejected("", "ends where a search term was expected");
+        assertRejected("   ", "ends where a search term was expected");
+        assertRejected("red OR", "ends where a search term was expected");
+        assertRejected("(red", "Missing ')'");
+        assertRejected("red)", "Unexpected ')' at position 4");
+        assertRejected("NOT", "Nothing follows NOT");
+        assertRejected("\"red", "Missing closing quote");
+        assertRejected("\"\"", "Nothing to search for");
+        assertRejected("re\"d", "a quote can only start a phrase");
+        assertRejected("/red", "Missing closing /");
+        assertRejected("/red/q", "Unknown regular expression flag 'q'");
+        assertRejected("/(/", "Invalid regular expression");
+        assertRejected("created:/2024/", "only apply to title: and content:");
+        assertRejected("color:red", "Unknown field 'color:'");
+        assertRejected("length:abc", "Expected a number");
+        assertRejected("length:\"3\"", "not a phrase");
+        assertRejected("created:2024-13", "Expected a date");
+        StringBuilder longRegex = new StringBuilder("/");
+        for (int i = 0; i <= NoteQuery.MAX_REGEX_LENGTH; i++) {
+            longRegex.append('a');
+        }
+        assertRejected(longRegex.append('/').toString(), "at most " + NoteQuery.MAX_REGEX_LENGTH);
+    }
+}
@@ -0,0 +1,190 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoteSearchIndexTest {
+    private static final String[] QUERIES = {
+        "fox", "quick brown", "\"quick brown\"", "\"brown quick\"", "qui*", "\"quick br*\"", "lazy OR cat",
+        "\"e-mail\"", "e-ma*", "don't", "\"the the\"", "dog", "nothing"
+    };
+
+    @TempDir
+    File directory;
+
+    private static List<Note> notes() {
+        List<Note> notes = new ArrayList<Note>();
+        String[][] texts = {
+            { "Fox", "the quick brown fox jumps over the lazy dog" },
+            { "Reversed", "brown quick fox, brown and quick" },
+            { "Mail", "send the e-mail before lunch; don't forget" },
+            { "Email", "email mail e" },
+            { "Repeat", "the the the fox fox" },
+            { "Cat", "a cat and a quick dog" },
+            { "Quick brown title", "nothing in common" }
+        };
+        for (int i = 0; i < texts.length; i++) {
+            Note note = new Note(texts[i][0], texts[i][1]);
+            note.id = i + 1;
+            notes.add(note);
+        }
+        return notes;
+    }
+
+    private static List<String> titles(Collection<Note> notes) {
+        List<String> titles = new ArrayList<String>();
+        for (Note note : notes) {
+            titles.add(note.getTitle());
+        }
+        return titles;
+    }
+
+    private static List<String> sorted(Collection<Note> notes) {
+        List<String> titles = titles(notes);
+        Collections.sort(titles);
+        return titles;
+    }
+
+    private static NoteSearchIndex index(List<Note> notes) {
+        NoteSearchIndex index = new NoteSearchIndex();
+        index.rebuild(notes);
+        return index;
+    }
+
+    @Test
+    void matchesPhrasesByPosition() {
+        NoteSearchIndex index = index(notes());
+        assertEquals(Arrays.asList("Fox"), sorted(index.search("\"quick brown\"", NoteSearchIndex.FIELD_CONTENT)));
+        assertEquals(Arrays.asList("Reversed"), sorted(index.search("\"brown quick\"", NoteSearchIndex.FIELD_CONTENT)));
+        assertEquals(Arrays.asList("Fox", "Reversed"), sorted(index.search("quick brown", NoteSearchIndex.FIELD_CONTENT)));
+        assertEquals(Arrays.asList("Repeat"), sorted(index.search("\"the the\"", NoteSearchIndex.FIELD_ALL)));
+        assertEquals(Arrays.asList("Fox"), sorted(index.search("\"jumps over the lazy dog\"", NoteSearchIndex.FIELD_ALL)));
+        assertTrue(index.search("\"fox lazy\"", NoteSearchIndex.FIELD_ALL).isEmpty());
+    }
+
+    @Test
+    void matchesPrefixes() {
+        NoteSearchIndex index = index(notes());
+        assertEquals(Arrays.asList("Cat", "Fox", "Quick brown title", "Reversed"), sorted(index.search("qui*", NoteSearchIndex.FIELD_ALL)));
+        assertEquals(Arrays.asList("Mail"), sorted(index.search("e-ma*", NoteSearchIndex.FIELD_CONTENT)));
+        assertTrue(index.search("\"quick br*\"", NoteSearchIndex.FIELD_CONTENT).isEmpty());
+    }
+
+    @Test
+    void keepsSplitWordsTogether() {
+        NoteSearchIndex index = index(notes());
+        assertEquals(Arrays.asList("Mail"), sorted(index.search("e-mail", NoteSearchIndex.FIELD_ALL)));
+        assertEquals(Arrays.asList("Mail"), sorted(index.search("don't", NoteSearchIndex.FIELD_ALL)));
+    }
+
+    @Test
+    void searchesOneField() {
+        NoteSearchIndex index = index(notes());
+        assertEquals(Arrays.asList("Quick brown title"), sorted(index.search("quick", NoteSearchIndex.FIELD_TITLE)));
+        assertFalse(sorted(index.search("quick", NoteSearchIndex.FIELD_CONTENT)).contains("Quick brown title"));
+        assertEquals(Arrays.asList("Cat", "Fox"), sorted(index.search("lazy OR cat", NoteSearchIndex.FIELD_ALL)));
+    }
+
+    @Test
+    void ranksMoreFrequentTermsFirst() {
+        NoteSearchIndex index = index(notes());
+        assertEquals("Repeat", index.search("fox", NoteSearchIndex.FIELD_CONTENT).get(0).getTitle());
+    }
+
+    @Test
+    void followsChanges() {
+        List<Note> notes = notes();
+        NoteSearchIndex index = index(notes);
+        Note fox = notes.get(0);
+        fox.update(null, "a slow red fox");
+        index.update(fox);
+        assertTrue(index.search("\"quick brown\"", NoteSearchIndex.FIELD_CONTENT).isEmpty());
+        assertEquals(Arrays.asList("Fox"), sorted(index.search("\"slow red\"", NoteSearchIndex.FIELD_ALL)));
+        index.remove(fox);
+        assertFalse(sorted(index.search("fox", NoteSearchIndex.FIELD_ALL)).contains("Fox"));
+    }
+
+    @Test
+    void loadsWhatItSaved() throws IOException {
+        List<Note> notes = notes();
+        NoteSearchIndex index = index(notes);
+        File file = new File(directory, NoteStore.INDEX_FILE);
+        index.save(file, notes);
+
+        NoteSearchIndex loaded = new NoteSearchIndex();
+        assertTrue(loaded.load(file, notes));
+        for (String query : QUERIES) {
+            for (int field = NoteSearchIndex.FIELD_TITLE; field <= NoteSearchIndex.FIELD_ALL; field++) {
+                assertEquals(titles(index.search(query, field)), titles(loaded.search(query, field)), query);
+            }
+        }
+
+        // Changes made to a loaded index are merged into the next file it saves
+        Note changed = notes.get(1);
+        changed.update(null, "quick brown fox");
+        loaded.update(changed);
+        Note added = new Note("Added", "the e-mail fox");
+        added.id = 20;
+        notes.add(added);
+        loaded.add(added);
+        loaded.remove(notes.get(5));
+        notes.remove(5);
+        NoteSearchIndex expected = index(notes);
+        for (String query : QUERIES) {
+            assertEquals(titles(expected.search(query, NoteSearchIndex.FIELD_ALL)), titles(loaded.search(query, NoteSearchIndex.FIELD_ALL)), query);
+        }
+        loaded.save(file, notes);
+        NoteSearchIndex reloaded = new NoteSearchIndex();
+        assertTrue(reloaded.load(file, notes));
+        for (String query : QUERIES) {
+            assertEquals(titles(expected.search(query, NoteSearchIndex.FIELD_ALL)), titles(reloaded.search(query, NoteSearchIndex.FIELD_ALL)), query);
+        }
+    }
+
+    @Test
+    void refusesAFileWrittenForOtherNotes() throws IOException {
+        List<Note> notes = notes();
+        File file = new File(directory, NoteStore.INDEX_FILE);
+        index(notes).save(file, notes);
+
+        List<Note> fewer = new ArrayList<Note>(notes.subList(1, notes.size()));
+        NoteSearchIndex index = new NoteSearchIndex();
+        assertFalse(index.load(file, fewer));
+        assertTrue(index.search("fox", NoteSearchIndex.FIELD_ALL).isEmpty());
+
+        RandomAccessFile torn = new RandomAccessFile(file, "rw");
+        torn.setLength(file.length() - 1);
+        torn.close();
+        assertFalse(new NoteSearchIndex().load(file, notes));
+        assertFalse(new NoteSearchIndex().load(new File(directory, "missing.idx"), notes));
+    }
+
+    @Test
+    void storeReplaysTheJournalIntoTheSavedIndex() throws IOException {
+        NoteStore store = new NoteStore(directory, false, 0, 0);
+        store.open();
+        for (Note note : notes()) {
+            store.add(new Note(note.getTitle(), note.getContent()));
+        }
+        store.checkpoint();
+        store.update(store.findByTitle("Cat"), null, "a quick brown cat");
+        store.remove(store.findByTitle("Fox"));
+        store.add(new Note("Late", "quick brown late fox"));
+        store.flush();
+        store.close();
+
+        NoteStore reopened = new NoteStore(directory, false, 0, 0);
+        reopened.open();
+        NoteSearchIndex expected = index(reopened.getNotes());
+        for (String query : QUERIES) {
+            assertEquals(sorted(expected.search(query, NoteSearchIndex.FIELD_ALL)),
+                         sorted(reopened.search(query, NoteSearchIndex.FIELD_ALL)), query);
+        }
+        reopened.close();
+    }
+}
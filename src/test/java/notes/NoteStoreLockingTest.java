@@ -0,0 +1,175 @@
+package notes;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoteStoreLockingTest {
+    private static final int THREADS = 8;
+
+    @TempDir
+    File directory;
+
+    private interface Task {
+        void run(int thread) throws Exception;
+    }
+
+    // Runs the task on THREADS threads at once and rethrows the first failure
+    private static void concurrently(final Task task) throws Exception {
+        final java.util.concurrent.CyclicBarrier start = new java.util.concurrent.CyclicBarrier(THREADS);
+        final java.util.concurrent.atomic.AtomicReference<Throwable> failure = new java.util.concurrent.atomic.AtomicReference<Throwable>();
+        Thread[] threads = new Thread[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            threads[t] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                        task.run(thread);
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join(60000);
+            assertFalse(thread.isAlive(), "deadlocked");
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+    private NoteStore open() throws IOException {
+        NoteStore store = new NoteStore(directory, false, 1, NoteStore.DEFAULT_FLUSH_BATCH_BYTES);
+        store.open();
+        return store;
+    }
+
+    private static void assertConsistent(NoteStore store) {
+        Set<String> keys = new HashSet<String>();
+        for (Note note : store.getNotes()) {
+            assertTrue(keys.add(Note.titleKey(note.getTitle())), "two notes titled " + note.getTitle());
+            assertSame(note, store.findByTitle(note.getTitle()));
+            assertSame(note, store.findById(note.id));
+        }
+        assertEquals(store.getNotes().size(), store.page(NoteStore.ORDER_TITLE, false, null, Integer.MAX_VALUE).getNotes().size());
+    }
+
+    @Test
+    void givesATitleToOneWriter() throws Exception {
+        final NoteStore store = open();
+        final java.util.concurrent.atomic.AtomicInteger added = new java.util.concurrent.atomic.AtomicInteger();
+        concurrently(new Task() {
+            public void run(int thread) throws Exception {
+                for (int i = 0; i < 200; i++) {
+                    if (store.add(new Note((i % 2 == 0 ? "Title " : "title ") + i, "from " + thread))) {
+                        added.incrementAndGet();
+                    }
+                }
+            }
+        });
+        assertEquals(200, added.get());
+        assertEquals(200, store.getNotes().size());
+        assertConsistent(store);
+        store.close();
+    }
+
+    @Test
+    void renamesAcrossStripesWithoutDeadlock() throws Exception {
+        final NoteStore store = open();
+        for (int i = 0; i < 16; i++) {
+            store.add(new Note("note " + i, "body " + i));
+        }
+        concurrently(new Task() {
+            public void run(int thread) throws Exception {
+                Random random = new Random(thread);
+                for (int i = 0; i < 2000; i++) {
+                    List<Note> notes = store.getNotes();
+                    Note note = notes.get(random.nextInt(notes.size()));
+                    String title = "note " + random.nextInt(32);
+                    store.update(note, title, random.nextInt(4) == 0 ? "edited " + i : null);
+                }
+            }
+        });
+        assertEquals(16, store.getNotes().size());
+        assertConsistent(store);
+        store.flush();
+        Map<Long, String> expected = NoteJournalTest.state(store);
+        store.close();
+
+        NoteStore reopened = open();
+        assertEquals(expected, NoteJournalTest.state(reopened));
+        reopened.close();
+    }
+
+    @Test
+    void checkpointsWhileWritersRun() throws Exception {
+        final NoteStore store = open();
+        concurrently(new Task() {
+            public void run(int thread) throws Exception {
+                for (int i = 0; i < 300; i++) {
+                    if (thread == 0 && i % 30 == 0) {
+                        store.checkpoint();
+                    } else {
+                        Note note = new Note("t" + thread + " n" + i, "body " + i);
+                        assertTrue(store.add(note));
+                        if (i % 3 == 0) {
+                            store.update(note, null, "changed " + i);
+                        } else if (i % 7 == 0) {
+                            store.remove(note);
+                        }
+                    }
+                }
+                store.flush();
+            }
+        });
+        Map<Long, String> expected = NoteJournalTest.state(store);
+        store.close();
+
+        NoteStore reopened = open();
+        assertEquals(expected, NoteJournalTest.state(reopened));
+        reopened.close();
+    }
+
+    @Test
+    void keepsRunningStatisticsExact() throws Exception {
+        final NoteStore store = open();
+        store.add(new Note("seed", "one two three"));
+        assertNotNull(store.statistics());
+        concurrently(new Task() {
+            public void run(int thread) throws Exception {
+                Random random = new Random(thread);
+                for (int i = 0; i < 300; i++) {
+                    String title = "s" + random.nextInt(40);
+                    Note note = store.findByTitle(title);
+                    try {
+                        if (note == null) {
+                            store.add(new Note(title, "words " + i + " and " + thread));
+                        } else if (random.nextBoolean()) {
+                            store.update(note, null, "a b c d e " + i);
+                        } else {
+                            store.remove(note);
+                        }
+                    } catch (IllegalArgumentException e) {
+                        // Removed by another thread
+                    }
+                }
+            }
+        });
+        NoteStatistics running = store.statistics();
+        NoteStatistics scanned = NoteStatistics.compute(store.getNotes());
+        assertEquals(scanned.getTotalWords(), running.getTotalWords());
+        assertEquals(scanned.getTotalCharacters(), running.getTotalCharacters());
+        assertEquals(scanned.getTotalNotes(), running.getTotalNotes());
+        assertSame(scanned.getLongestNote(), running.getLongestNote());
+        assertSame(scanned.getShortestNote(), running.getShortestNote());
+        store.close();
+    }
+}